@@ -0,0 +1,9 @@
+package com.zenjava.test;
+
+public class Unused {
+
+    public String getText() {
+        return "nobody calls me";
+    }
+
+}
@@ -0,0 +1,12 @@
+package com.zenjava.test;
+
+/**
+ * Exits by itself, so profiling the application while building does not have to wait for the timeout.
+ */
+public class Main {
+
+    public static void main(String[] args) {
+        System.out.println("Hello World!");
+    }
+
+}
@@ -0,0 +1 @@
+package com.zenjava.removed;
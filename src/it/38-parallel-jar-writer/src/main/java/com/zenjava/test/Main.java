@@ -0,0 +1,9 @@
+package com.zenjava.test;
+
+public class Main {
+
+    public static void main(String[] args) {
+        System.out.println("Hello World!");
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.zenjava.test.customBundlers;
+
+import com.oracle.tools.packager.Bundler;
+import com.oracle.tools.packager.BundlerParamInfo;
+import com.oracle.tools.packager.ConfigException;
+import com.oracle.tools.packager.RelativeFileSet;
+import com.oracle.tools.packager.StandardBundlerParam;
+import com.oracle.tools.packager.UnsupportedPlatformException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Copies the application resources into its bundle-folder, telling where the bundle got created (which is required
+ * for being skipped when nothing changed).
+ */
+public class CopyingBundler implements Bundler {
+
+    @Override
+    public String getName() {
+        return "CopyingBundler";
+    }
+
+    @Override
+    public String getDescription() {
+        return "CopyingBundler - Example custom bundler of the javafx-maven-plugin";
+    }
+
+    @Override
+    public String getID() {
+        return "CopyingBundler";
+    }
+
+    @Override
+    public String getBundleType() {
+        return "IMAGE";
+    }
+
+    @Override
+    public Collection<BundlerParamInfo<?>> getBundleParameters() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean validate(Map<String, ? super Object> map) throws UnsupportedPlatformException, ConfigException {
+        return true;
+    }
+
+    @Override
+    public File execute(Map<String, ? super Object> map, File outputParentDir) {
+        System.out.println("CopyingBundler > EXECUTING");
+        RelativeFileSet appResources = (RelativeFileSet) map.get(StandardBundlerParam.APP_RESOURCES.getID());
+        File bundle = new File(outputParentDir, "CopyingBundler");
+        try{
+            for( String appResource : appResources.getIncludedFiles() ){
+                File target = new File(bundle, appResource);
+                Files.createDirectories(target.getParentFile().toPath());
+                Files.copy(new File(appResources.getBaseDirectory(), appResource).toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch(IOException ex){
+            throw new RuntimeException(ex);
+        }
+        return bundle;
+    }
+
+    // not part of every JDK 8 version of the bundler-interface, therefore no @Override
+    public void cleanup(Map<String, ? super Object> map) {
+        // nothing to clean
+    }
+
+}
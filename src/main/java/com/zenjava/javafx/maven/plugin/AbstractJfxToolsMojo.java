@@ -17,16 +17,21 @@ package com.zenjava.javafx.maven.plugin;
 
 import com.oracle.tools.packager.Log;
 import com.sun.javafx.tools.packager.PackagerLib;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.project.MavenProject;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
 
 /**
  * Base Mojo that any other Mojo wanting to access the JavaFX Packager tools should extend from. This provides
@@ -99,8 +104,140 @@ public abstract class AbstractJfxToolsMojo extends AbstractMojo {
      */
     protected String deployDir;
 
+    /**
+     * Set this to true for creating reproducible output: building the same sources twice results in byte-identical
+     * jar-files. All entries are sorted and get the same timestamp, the manifest-entries get sorted too. This requires
+     * the streaming jar-writer, which gets used automatically.
+     * <p>
+     * When no &lt;outputTimestamp&gt; is configured, 1980-02-01T00:00:00Z is used for all entries.
+     *
+     * @parameter property="jfx.reproducible" default-value=false
+     * @since 8.6.0
+     */
+    protected boolean reproducible;
+
+    /**
+     * Timestamp used for all entries when creating reproducible output, either as ISO-8601 date (like
+     * 2018-01-01T00:00:00Z) or as seconds since epoch. This defaults to the property "project.build.outputTimestamp",
+     * which is used by other maven-plugins for the same purpose. Setting this enables reproducible output.
+     *
+     * @parameter default-value="${project.build.outputTimestamp}"
+     * @since 8.6.0
+     */
+    protected String outputTimestamp;
+
+    /**
+     * Set this to false for not measuring where the time of this goal goes. The duration of every stage (like copying
+     * dependencies, writing the jar-file, every bundler and signing), together with the processed bytes and files,
+     * gets written to 'target/jfx/build-report.json' and some summary table gets logged at the end of the goal.
+     *
+     * @parameter property="jfx.writeBuildReport" default-value=true
+     * @since 8.6.0
+     */
+    protected boolean writeBuildReport;
+
+    /**
+     * The Maven Session Object
+     *
+     * @parameter property="session"
+     * @required
+     * @readonly
+     */
+    protected MavenSession session;
+
+    /**
+     * The current execution of this Mojo
+     *
+     * @parameter property="mojoExecution"
+     * @readonly
+     */
+    protected MojoExecution mojoExecution;
+
     private PackagerLib packagerLib;
 
+    private BuildReport buildReport;
+
+    /**
+     * Timestamp used when &lt;reproducible&gt; is enabled without having any &lt;outputTimestamp&gt;. This is the
+     * same value other tools use, the zip-format can't store anything before 1980.
+     */
+    private static final long DEFAULT_REPRODUCIBLE_TIMESTAMP = 318211200000L;
+
+    /**
+     * All intermediate files (like fingerprints of previous builds) are stored inside 'target/jfx'.
+     *
+     * @return the folder for intermediate files of this plugin
+     */
+    protected File getJfxBuildDirectory() {
+        return new File(project.getBuild().getDirectory(), "jfx");
+    }
+
+    /**
+     * Starts measuring the stages of this goal.
+     *
+     * @param goal the name of the goal, used when the execution is unknown
+     */
+    protected void startBuildReport(String goal) {
+        buildReport = createBuildReport(mojoExecution, goal);
+    }
+
+    /**
+     * @return the report of the current goal, never null
+     */
+    protected BuildReport getBuildReport() {
+        if( buildReport == null ){
+            startBuildReport(getClass().getSimpleName());
+        }
+        return buildReport;
+    }
+
+    /**
+     * Writes the report of the current goal (when enabled) and logs some summary of all stages.
+     */
+    protected void finishBuildReport() {
+        if( buildReport == null || !writeBuildReport ){
+            return;
+        }
+        finishBuildReport(buildReport, getJfxBuildDirectory(), session, getLog());
+    }
+
+    static BuildReport createBuildReport(MojoExecution mojoExecution, String goal) {
+        if( mojoExecution == null ){
+            return new BuildReport(goal, null);
+        }
+        return new BuildReport(mojoExecution.getGoal(), mojoExecution.getExecutionId());
+    }
+
+    static void finishBuildReport(BuildReport buildReport, File jfxBuildDirectory, MavenSession session, org.apache.maven.plugin.logging.Log logger) {
+        Object sessionStart = session == null || session.getRequest() == null ? null : session.getRequest().getStartTime();
+        try{
+            buildReport.finish(new File(jfxBuildDirectory, BuildReport.REPORT_FILE), sessionStart, logger);
+        } catch(IOException ex){
+            logger.warn("Couldn't write build report: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * @return the timestamp for all created entries (milliseconds since epoch), or null when reproducible output is
+     * not enabled
+     * @throws MojoExecutionException when &lt;outputTimestamp&gt; has some invalid format
+     */
+    protected Long getReproducibleTimestamp() throws MojoExecutionException {
+        // single characters are used to disable it (like "-" or " ")
+        if( outputTimestamp == null || outputTimestamp.trim().length() < 2 ){
+            return reproducible ? DEFAULT_REPRODUCIBLE_TIMESTAMP : null;
+        }
+        String value = outputTimestamp.trim();
+        try{
+            if( value.chars().allMatch(Character::isDigit) ){
+                return Long.parseLong(value) * 1000;
+            }
+            return OffsetDateTime.parse(value).toInstant().toEpochMilli();
+        } catch(NumberFormatException | DateTimeParseException ex){
+            throw new MojoExecutionException("Please provide a proper value for <outputTimestamp>, either ISO-8601 (like 2018-01-01T00:00:00Z) or seconds since epoch!", ex);
+        }
+    }
+
     public PackagerLib getPackagerLib() throws MojoExecutionException {
         // lazy-initialization of packagerLib
         if( packagerLib == null ){
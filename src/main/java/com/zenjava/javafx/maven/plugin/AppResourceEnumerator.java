@@ -0,0 +1,173 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Collects all files of some folder which should become application resources, filtered by glob-patterns relative to
+ * that folder (like "**&#47;*.txt" or "docs/**"). The folder gets walked only once, using the attributes the walk
+ * already provides, so even tens of thousands of files are cheap.
+ * <p>
+ * Only some summary gets logged, every single file is logged when being verbose.
+ */
+public class AppResourceEnumerator {
+
+    private static final String GLOB_PREFIX = "glob:";
+
+    private final Log logger;
+    private final List<PathMatcher> includes;
+    private final List<PathMatcher> excludes;
+    private final boolean verbose;
+
+    /**
+     * @param includes glob-patterns of files to include, everything is included when null or empty
+     * @param excludes glob-patterns of files (or whole folders) to exclude, might be null
+     * @param verbose true for logging every file
+     * @param logger the log to write to
+     */
+    public AppResourceEnumerator(List<String> includes, List<String> excludes, boolean verbose, Log logger) {
+        this.includes = toMatchers(includes);
+        this.excludes = toMatchers(excludes);
+        this.verbose = verbose;
+        this.logger = logger;
+    }
+
+    public Log getLog() {
+        return logger;
+    }
+
+    /**
+     * @param folder the folder to walk
+     * @return all readable, regular files which are included and not excluded
+     * @throws IOException when the folder could not be read
+     */
+    public Result enumerate(Path folder) throws IOException {
+        Result result = new Result();
+        if( !Files.isDirectory(folder) ){
+            return result;
+        }
+        Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attrs) throws IOException {
+                if( !directory.equals(folder) && matchesAny(excludes, folder.relativize(directory)) ){
+                    result.excludedFiles++;
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if( !attrs.isRegularFile() ){
+                    return FileVisitResult.CONTINUE;
+                }
+                Path relativeFile = folder.relativize(file);
+                if( (!includes.isEmpty() && !matchesAny(includes, relativeFile)) || matchesAny(excludes, relativeFile) ){
+                    result.excludedFiles++;
+                    return FileVisitResult.CONTINUE;
+                }
+                if( !Files.isReadable(file) ){
+                    getLog().warn(String.format("Skipping unreadable application resource %s", file));
+                    return FileVisitResult.CONTINUE;
+                }
+                if( verbose ){
+                    getLog().info(String.format("Add %s file to application resources.", file));
+                } else if( getLog().isDebugEnabled() ){
+                    getLog().debug(String.format("Add %s file to application resources.", file));
+                }
+                result.files.add(file.toFile());
+                result.totalBytes += attrs.size();
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException ex) throws IOException {
+                // don't fail, just inform user
+                getLog().warn(String.format("Couldn't read application resource %s with reason %s", file, ex.getLocalizedMessage()));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return result;
+    }
+
+    private static List<PathMatcher> toMatchers(List<String> patterns) {
+        if( patterns == null ){
+            return Collections.emptyList();
+        }
+        return patterns.stream()
+                .filter(pattern -> pattern != null && !pattern.trim().isEmpty())
+                .map(pattern -> FileSystems.getDefault().getPathMatcher(GLOB_PREFIX + pattern.trim()))
+                .collect(Collectors.toList());
+    }
+
+    private static boolean matchesAny(List<PathMatcher> matchers, Path relativePath) {
+        for( PathMatcher matcher : matchers ){
+            if( matcher.matches(relativePath) ){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static class Result {
+
+        private final Set<File> files = new HashSet<>();
+        private long totalBytes = 0;
+        private int excludedFiles = 0;
+
+        /**
+         * @return all files, as required by RelativeFileSet
+         */
+        public Set<File> getFiles() {
+            return files;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        /**
+         * @return amount of files (and skipped folders) which were filtered out
+         */
+        public int getExcludedFiles() {
+            return excludedFiles;
+        }
+
+        public String getSummary() {
+            String summary = String.format("%s files, %s bytes", files.size(), totalBytes);
+            if( excludedFiles > 0 ){
+                summary += String.format(" (%s excluded)", excludedFiles);
+            }
+            return summary;
+        }
+    }
+}
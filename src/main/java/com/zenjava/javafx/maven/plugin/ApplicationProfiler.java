@@ -0,0 +1,194 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Starts the application inside some separate JVM and records all classes in the order they got loaded. The
+ * application runs until it exits by itself, until some marker class got loaded (e.g. the first controller being
+ * shown) or until the timeout is reached, whatever happens first.
+ * <p>
+ * On headless build-agents, JavaFX needs some headless glass-platform (like Monocle), which can be configured by
+ * passing the required system properties as JVM arguments.
+ */
+public class ApplicationProfiler {
+
+    private static final String JAVA8_LOADED_PREFIX = "[Loaded ";
+    private static final String JAVA8_LOADED_SUFFIX = " from ";
+    private static final String UNIFIED_LOADED_PREFIX = "[class,load] ";
+    private static final String UNIFIED_LOADED_SUFFIX = " source: ";
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private final File javaExecutable;
+    private final Log logger;
+
+    public ApplicationProfiler(Log logger) {
+        this(getCurrentJavaExecutable(), logger);
+    }
+
+    public ApplicationProfiler(File javaExecutable, Log logger) {
+        this.javaExecutable = javaExecutable;
+        this.logger = logger;
+    }
+
+    public Log getLog() {
+        return logger;
+    }
+
+    public File getJavaExecutable() {
+        return javaExecutable;
+    }
+
+    /**
+     * @return the java-executable of the JVM running this build, which is the one getting bundled too
+     */
+    public static File getCurrentJavaExecutable() {
+        String executableName = System.getProperty("os.name").toLowerCase().startsWith("windows") ? "java.exe" : "java";
+        return new File(new File(System.getProperty("java.home"), "bin"), executableName);
+    }
+
+    /**
+     * @param classPath all entries of the classpath, in order
+     * @param mainClass the class to start
+     * @param jvmArgs additional arguments for the JVM (like system properties)
+     * @param markerClass the application gets stopped as soon as this class got loaded, might be null
+     * @param timeoutSeconds the application gets stopped after this time
+     * @return the recorded classes
+     * @throws IOException when the JVM could not be started
+     */
+    public ProfilingResult profile(List<File> classPath, String mainClass, List<String> jvmArgs, String markerClass, int timeoutSeconds) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(javaExecutable.getAbsolutePath());
+        command.add("-verbose:class");
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(classPath.stream().map(File::getAbsolutePath).collect(Collectors.joining(File.pathSeparator)));
+        command.add(mainClass);
+        getLog().debug("Profiling application: " + String.join(" ", command));
+
+        ProfilingResult result = new ProfilingResult();
+        CountDownLatch finished = new CountDownLatch(1);
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        Thread outputReader = new Thread(() -> {
+            try(BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), Charset.defaultCharset()))){
+                String line;
+                while( (line = reader.readLine()) != null ){
+                    String loadedClass = parseLoadedClass(line);
+                    if( loadedClass == null ){
+                        getLog().debug("[profiled application] " + line);
+                        continue;
+                    }
+                    synchronized(result){
+                        result.loadedClasses.add(loadedClass);
+                    }
+                    if( loadedClass.equals(markerClass) ){
+                        result.markerReached = true;
+                        finished.countDown();
+                    }
+                }
+            } catch(IOException ex){
+                // stopping the application closes its output
+                if( finished.getCount() > 0 ){
+                    getLog().debug(ex);
+                }
+            } finally{
+                finished.countDown();
+            }
+        }, "application-profiler");
+        outputReader.setDaemon(true);
+        outputReader.start();
+
+        try{
+            if( !finished.await(timeoutSeconds, TimeUnit.SECONDS) ){
+                result.timedOut = true;
+            }
+            if( process.isAlive() ){
+                // normal termination, so the JVM runs its shutdown hooks
+                process.destroy();
+                if( !process.waitFor(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS) ){
+                    process.destroyForcibly().waitFor();
+                }
+            }
+            outputReader.join(TimeUnit.SECONDS.toMillis(SHUTDOWN_TIMEOUT_SECONDS));
+        } catch(InterruptedException ex){
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while profiling application", ex);
+        }
+        result.durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Parses the output of "-verbose:class", which differs between Java 8 and the unified logging of Java 9+.
+     *
+     * @param line some line of output
+     * @return the name of the loaded class, or null when this line is no class-loading output
+     */
+    static String parseLoadedClass(String line) {
+        int start = line.indexOf(JAVA8_LOADED_PREFIX);
+        if( start == 0 ){
+            int end = line.indexOf(JAVA8_LOADED_SUFFIX, start);
+            return end < 0 ? null : line.substring(start + JAVA8_LOADED_PREFIX.length(), end);
+        }
+        start = line.indexOf(UNIFIED_LOADED_PREFIX);
+        if( start >= 0 ){
+            int end = line.indexOf(UNIFIED_LOADED_SUFFIX, start);
+            return end < 0 ? null : line.substring(start + UNIFIED_LOADED_PREFIX.length(), end);
+        }
+        return null;
+    }
+
+    public static class ProfilingResult {
+
+        private final List<String> loadedClasses = new ArrayList<>();
+        private volatile boolean markerReached = false;
+        private boolean timedOut = false;
+        private long durationMillis = 0;
+
+        /**
+         * @return all loaded classes (including the ones of the JRE), in the order they got loaded
+         */
+        public synchronized List<String> getLoadedClasses() {
+            return Collections.unmodifiableList(new ArrayList<>(loadedClasses));
+        }
+
+        public boolean isMarkerReached() {
+            return markerReached;
+        }
+
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Measures where the time of some goal goes: every stage (like copying dependencies, writing the jar-file, every
+ * bundler or signing) records its duration, and optionally the bytes and files it processed. Stages might run in
+ * parallel.
+ * <p>
+ * All goals running within the same maven-session end up inside the same report-file, because jfx:native runs
+ * jfx:jar before.
+ */
+public class BuildReport {
+
+    public static final String REPORT_FILE = "build-report.json";
+
+    // report-file -> all goals of the current session written into it
+    private static final Map<File, SessionReport> SESSION_REPORTS = new HashMap<>();
+
+    private final String goal;
+    private final String executionId;
+    private final long startTime = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final List<StageRecord> stages = new ArrayList<>();
+
+    /**
+     * @param goal the goal being measured, like "build-jar"
+     * @param executionId the ID of the execution, might be null
+     */
+    public BuildReport(String goal, String executionId) {
+        this.goal = goal;
+        this.executionId = executionId;
+    }
+
+    /**
+     * Starts measuring some stage, which ends when the returned stage gets closed:
+     * <pre>
+     * try(BuildReport.Stage stage = report.startStage("write jar")){
+     *     ...
+     *     stage.addOutput(jarFile);
+     * }
+     * </pre>
+     *
+     * @param name the name of the stage, stages having the same name are listed separately
+     * @return the running stage
+     */
+    public Stage startStage(String name) {
+        return new Stage(name);
+    }
+
+    /**
+     * @param name the name of the stage
+     * @param durationMillis the measured duration
+     * @param bytes the processed bytes, 0 when unknown
+     * @param files the processed files, 0 when unknown
+     */
+    public synchronized void addStage(String name, long durationMillis, long bytes, long files) {
+        stages.add(new StageRecord(name, durationMillis, bytes, files));
+    }
+
+    /**
+     * Writes all goals of the current session into the report-file and logs some summary of this goal.
+     *
+     * @param reportFile the file to write to
+     * @param sessionStart identifies the current session (like its start-time), all goals reported before within
+     * some other session get dropped
+     * @param logger the log to write the summary to
+     * @throws IOException when the report-file could not be written
+     */
+    public void finish(File reportFile, Object sessionStart, Log logger) throws IOException {
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        List<StageRecord> finishedStages;
+        synchronized(this){
+            finishedStages = new ArrayList<>(stages);
+        }
+        Map<String, Object> goalReport = new LinkedHashMap<>();
+        goalReport.put("goal", goal);
+        goalReport.put("execution", executionId);
+        goalReport.put("startTime", startTime);
+        goalReport.put("durationMillis", durationMillis);
+        List<Object> stageReports = new ArrayList<>();
+        finishedStages.forEach(stage -> {
+            Map<String, Object> stageReport = new LinkedHashMap<>();
+            stageReport.put("name", stage.name);
+            stageReport.put("durationMillis", stage.durationMillis);
+            stageReport.put("bytes", stage.bytes);
+            stageReport.put("files", stage.files);
+            stageReports.add(stageReport);
+        });
+        goalReport.put("stages", stageReports);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        synchronized(SESSION_REPORTS){
+            File sessionKey = reportFile.getAbsoluteFile();
+            SessionReport sessionReport = SESSION_REPORTS.get(sessionKey);
+            if( sessionReport == null || sessionStart == null || !Objects.equals(sessionReport.sessionStart, sessionStart) ){
+                sessionReport = new SessionReport(sessionStart);
+                SESSION_REPORTS.put(sessionKey, sessionReport);
+            }
+            sessionReport.goals.add(goalReport);
+            report.put("goals", new ArrayList<>(sessionReport.goals));
+        }
+        JsonWriter.write(report, reportFile);
+
+        logger.info(String.format("Build report for %s (%s ms), written to %s", goal, durationMillis, reportFile));
+        if( finishedStages.isEmpty() ){
+            return;
+        }
+        String format = "  %-40s %10s %14s %8s";
+        logger.info(String.format(format, "Stage", "Duration", "Bytes", "Files"));
+        finishedStages.forEach(stage -> {
+            logger.info(String.format(format, stage.name, stage.durationMillis + " ms", stage.bytes > 0 ? String.valueOf(stage.bytes) : "-", stage.files > 0 ? String.valueOf(stage.files) : "-"));
+        });
+    }
+
+    /**
+     * Some running stage, gets recorded when closed.
+     */
+    public class Stage implements AutoCloseable {
+
+        private final String name;
+        private final long start = System.nanoTime();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong files = new AtomicLong();
+        private boolean closed = false;
+
+        Stage(String name) {
+            this.name = name;
+        }
+
+        public void addBytes(long processedBytes) {
+            bytes.addAndGet(processedBytes);
+        }
+
+        public void addFiles(long processedFiles) {
+            files.addAndGet(processedFiles);
+        }
+
+        /**
+         * Adds the size of the given file, or of all files inside the given folder.
+         *
+         * @param output some created file or folder, might be null
+         */
+        public void addOutput(File output) {
+            if( output == null ){
+                return;
+            }
+            if( output.isFile() ){
+                addBytes(output.length());
+                addFiles(1);
+                return;
+            }
+            if( !output.isDirectory() ){
+                return;
+            }
+            // try-ressource, because walking on files is lazy, resulting in file-handler left open otherwise
+            try(Stream<Path> walkstream = Files.walk(output.toPath())){
+                walkstream.filter(Files::isRegularFile).forEach(file -> {
+                    addBytes(file.toFile().length());
+                    addFiles(1);
+                });
+            } catch(IOException | UncheckedIOException ex){
+                // sizes are only informational
+            }
+        }
+
+        @Override
+        public void close() {
+            if( closed ){
+                return;
+            }
+            closed = true;
+            addStage(name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), bytes.get(), files.get());
+        }
+    }
+
+    private static class StageRecord {
+
+        private final String name;
+        private final long durationMillis;
+        private final long bytes;
+        private final long files;
+
+        StageRecord(String name, long durationMillis, long bytes, long files) {
+            this.name = name;
+            this.durationMillis = durationMillis;
+            this.bytes = bytes;
+            this.files = files;
+        }
+    }
+
+    private static class SessionReport {
+
+        private final Object sessionStart;
+        private final List<Map<String, Object>> goals = new ArrayList<>();
+
+        SessionReport(Object sessionStart) {
+            this.sessionStart = sessionStart;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zenjava.javafx.maven.plugin;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Runs bundlers (and the work which has to happen after some bundler) respecting their dependencies, independent
+ * tasks run in parallel when configured. When running in parallel, the failure of some task does not stop the other
+ * tasks, only the tasks depending on it get skipped. Using only one thread stops at the first failure, like running the
+ * bundlers one after another always did.
+ * <p>
+ * While running in parallel, every task logs into its own buffer (see {@link #getLog()}), which gets written as one
+ * block as soon as the task finished. This keeps the output of every bundler together.
+ */
+public class BundlerScheduler {
+
+    private final Log logger;
+    private final int threads;
+    private final Map<String, ScheduledTask> tasks = new LinkedHashMap<>();
+    private final ThreadLocal<Log> taskLog = new ThreadLocal<>();
+    private final Log routingLog;
+
+    public BundlerScheduler(int threads, Log logger) {
+        this.threads = Math.max(1, threads);
+        this.logger = logger;
+        // everything logged from inside some task has to end up inside the buffer of that task
+        this.routingLog = (Log) Proxy.newProxyInstance(Log.class.getClassLoader(), new Class<?>[]{Log.class}, (proxy, method, args) -> {
+            Log log = taskLog.get();
+            try{
+                return method.invoke(log == null ? logger : log, args);
+            } catch(InvocationTargetException ex){
+                throw ex.getCause();
+            }
+        });
+    }
+
+    /**
+     * @return some log writing into the buffer of the currently running task, or into the normal log when not called
+     * from inside some task
+     */
+    public Log getLog() {
+        return routingLog;
+    }
+
+    /**
+     * @param id the unique name of the task (e.g. the bundler ID)
+     * @param dependencies IDs of the tasks which have to finish before, all of them have to be added before running
+     * @param task the work to do
+     */
+    public void addTask(String id, Collection<String> dependencies, BundlerTask task) {
+        if( tasks.containsKey(id) ){
+            throw new IllegalArgumentException("Task " + id + " got already added");
+        }
+        tasks.put(id, new ScheduledTask(id, new LinkedHashSet<>(dependencies), task));
+    }
+
+    /**
+     * Runs all tasks, some task starts as soon as all of its dependencies finished successfully.
+     *
+     * @return all failed tasks with their exception, in the order they were added
+     * @throws IllegalStateException when some task depends on some task which was not added
+     */
+    public Map<String, Exception> run() {
+        Map<String, Exception> failures = new LinkedHashMap<>();
+        List<ScheduledTask> pendingTasks = new ArrayList<>(tasks.values());
+        for( ScheduledTask task : pendingTasks ){
+            // silently ignoring them would run the task without the result it is waiting for
+            List<String> unknownDependencies = task.dependencies.stream().filter(dependency -> !tasks.containsKey(dependency)).collect(Collectors.toList());
+            if( !unknownDependencies.isEmpty() ){
+                throw new IllegalStateException(String.format("Task %s depends on unknown tasks %s", task.id, unknownDependencies));
+            }
+        }
+
+        if( threads == 1 ){
+            // same order as added, but respecting dependencies
+            while( !pendingTasks.isEmpty() ){
+                ScheduledTask task = nextRunnableTask(pendingTasks, failures, new LinkedHashSet<>());
+                if( task == null ){
+                    break;
+                }
+                pendingTasks.remove(task);
+                runTask(task, failures);
+                if( !failures.isEmpty() ){
+                    if( !pendingTasks.isEmpty() ){
+                        logger.warn(String.format("Not running %s, because %s failed", pendingTasks.stream().map(pendingTask -> pendingTask.id).collect(Collectors.joining(", ")), task.id));
+                    }
+                    break;
+                }
+            }
+            return sortedFailures(failures);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try{
+            ExecutorCompletionService<ScheduledTask> completionService = new ExecutorCompletionService<>(executor);
+            Set<String> runningTasks = new LinkedHashSet<>();
+            while( !pendingTasks.isEmpty() || !runningTasks.isEmpty() ){
+                ScheduledTask task;
+                while( (task = nextRunnableTask(pendingTasks, failures, runningTasks)) != null ){
+                    pendingTasks.remove(task);
+                    runningTasks.add(task.id);
+                    ScheduledTask taskToRun = task;
+                    completionService.submit(() -> {
+                        BufferedLog bufferedLog = new BufferedLog();
+                        taskLog.set(bufferedLog.getLog());
+                        try{
+                            taskToRun.exception = invokeTask(taskToRun);
+                        } finally{
+                            taskLog.remove();
+                        }
+                        taskToRun.output = bufferedLog;
+                        return taskToRun;
+                    });
+                }
+                if( runningTasks.isEmpty() ){
+                    break;
+                }
+                Future<ScheduledTask> finishedTask = completionService.take();
+                ScheduledTask finished = finishedTask.get();
+                runningTasks.remove(finished.id);
+                logger.info(String.format("------ %s (%s ms) ------", finished.id, finished.durationMillis));
+                finished.output.writeTo(logger);
+                if( finished.exception != null ){
+                    logger.error(String.format("Task %s failed: %s", finished.id, finished.exception.getMessage()));
+                    failures.put(finished.id, finished.exception);
+                }
+            }
+        } catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running bundlers", ex);
+        } catch(ExecutionException | ReflectiveOperationException ex){
+            throw new IllegalStateException("Unexpected failure while running bundlers", ex);
+        } finally{
+            executor.shutdownNow();
+        }
+        return sortedFailures(failures);
+    }
+
+    /**
+     * Finds the first task having all dependencies done, tasks depending on some failed (or skipped) task get skipped.
+     */
+    private ScheduledTask nextRunnableTask(List<ScheduledTask> pendingTasks, Map<String, Exception> failures, Set<String> runningTasks) {
+        boolean skippedTask = true;
+        while( skippedTask ){
+            skippedTask = false;
+            for( ScheduledTask task : new ArrayList<>(pendingTasks) ){
+                String failedDependency = task.dependencies.stream().filter(failures::containsKey).findFirst().orElse(null);
+                if( failedDependency != null ){
+                    logger.warn(String.format("Skipping %s, because %s failed", task.id, failedDependency));
+                    pendingTasks.remove(task);
+                    failures.put(task.id, new IllegalStateException("Skipped because " + failedDependency + " failed"));
+                    skippedTask = true;
+                }
+            }
+        }
+        for( ScheduledTask task : pendingTasks ){
+            boolean dependenciesDone = task.dependencies.stream().noneMatch(dependency -> runningTasks.contains(dependency) || pendingTasks.stream().anyMatch(pendingTask -> pendingTask.id.equals(dependency)));
+            if( dependenciesDone ){
+                return task;
+            }
+        }
+        if( !pendingTasks.isEmpty() && runningTasks.isEmpty() ){
+            throw new IllegalStateException("Cyclic dependencies between tasks: " + pendingTasks.stream().map(task -> task.id).reduce((first, second) -> first + ", " + second).orElse(""));
+        }
+        return null;
+    }
+
+    private void runTask(ScheduledTask task, Map<String, Exception> failures) {
+        Exception exception = invokeTask(task);
+        logger.debug(String.format("Task %s took %s ms", task.id, task.durationMillis));
+        if( exception != null ){
+            logger.error(String.format("Task %s failed: %s", task.id, exception.getMessage()));
+            failures.put(task.id, exception);
+        }
+    }
+
+    private Exception invokeTask(ScheduledTask task) {
+        long start = System.nanoTime();
+        try{
+            task.task.run();
+            return null;
+        } catch(Exception ex){
+            return ex;
+        } finally{
+            task.durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+    }
+
+    private Map<String, Exception> sortedFailures(Map<String, Exception> failures) {
+        Map<String, Exception> sortedFailures = new LinkedHashMap<>();
+        tasks.keySet().stream().filter(failures::containsKey).forEach(id -> sortedFailures.put(id, failures.get(id)));
+        return sortedFailures;
+    }
+
+    @FunctionalInterface
+    public interface BundlerTask {
+
+        void run() throws Exception;
+    }
+
+    private static class ScheduledTask {
+
+        private final String id;
+        private final Set<String> dependencies;
+        private final BundlerTask task;
+        private volatile Exception exception = null;
+        private volatile BufferedLog output = null;
+        private volatile long durationMillis = 0;
+
+        ScheduledTask(String id, Set<String> dependencies, BundlerTask task) {
+            this.id = id;
+            this.dependencies = dependencies;
+            this.task = task;
+        }
+    }
+
+    /**
+     * Collects all messages of some task, they get written to the real log (which checks the levels) afterwards.
+     */
+    private static class BufferedLog implements InvocationHandler {
+
+        private final List<Object[]> invocations = new ArrayList<>();
+        private final Log log = (Log) Proxy.newProxyInstance(Log.class.getClassLoader(), new Class<?>[]{Log.class}, this);
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if( method.getReturnType() == boolean.class ){
+                // isDebugEnabled() and friends
+                return true;
+            }
+            if( method.getDeclaringClass() == Object.class ){
+                return method.invoke(this, args);
+            }
+            invocations.add(new Object[]{method, args});
+            return null;
+        }
+
+        Log getLog() {
+            return log;
+        }
+
+        synchronized void writeTo(Log target) throws ReflectiveOperationException {
+            for( Object[] invocation : invocations ){
+                ((Method) invocation[0]).invoke(target, (Object[]) invocation[1]);
+            }
+        }
+    }
+}
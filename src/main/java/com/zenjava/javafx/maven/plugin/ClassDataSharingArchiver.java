@@ -0,0 +1,274 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Creates some Class Data Sharing archive (AppCDS) containing all classes loaded while starting the application.
+ * The JVM maps this archive into memory instead of loading, parsing and verifying these classes on every start.
+ * <p>
+ * The application is started the same way as the native launcher does: only the main jar is put on the classpath,
+ * all other jar-files are found via its "Class-Path" manifest-entry. As the JVM checks the classpath recorded inside
+ * the archive, archives are only kept when the JVM accepts them after the application got moved somewhere else (like
+ * when installing the bundle), older JVMs only accept the exact paths used while dumping.
+ * <p>
+ * Archives are cached by the hash of all classpath-entries (and the used JVM), so profiling and dumping only happens
+ * when some jar-file changed.
+ */
+public class ClassDataSharingArchiver {
+
+    public static final String ARCHIVE_EXTENSION = ".jsa";
+    private static final String CLASSLIST_EXTENSION = ".classlist";
+    private static final String RELOCATED_APP_FOLDER = "app";
+
+    private final ApplicationProfiler profiler;
+    private final File cacheDirectory;
+    private final Log logger;
+
+    public ClassDataSharingArchiver(ApplicationProfiler profiler, File cacheDirectory, Log logger) {
+        this.profiler = profiler;
+        this.cacheDirectory = cacheDirectory;
+        this.logger = logger;
+    }
+
+    public Log getLog() {
+        return logger;
+    }
+
+    /**
+     * Options required for creating and for using AppCDS, these depend on the Java version.
+     *
+     * @param javaSpecificationVersion the value of "java.specification.version" of the JVM running the application
+     * @return the options to unlock AppCDS
+     */
+    public static List<String> getUnlockOptions(String javaSpecificationVersion) {
+        switch(javaSpecificationVersion){
+            case "1.8":
+            case "9":
+                // commercial feature of the Oracle JDK
+                return Arrays.asList("-XX:+UnlockCommercialFeatures", "-XX:+UseAppCDS");
+            case "10":
+                return Collections.singletonList("-XX:+UseAppCDS");
+            default:
+                return Collections.emptyList();
+        }
+    }
+
+    /**
+     * The options are made for the JVM running this build, so the bundled runtime has to be the same.
+     *
+     * @param archive the archive as it is found at runtime (e.g. "$APPDIR/app.jsa")
+     * @return all options for the JVM to use the archive, the JVM silently ignores the archive when it does not match
+     */
+    public static List<String> getRuntimeOptions(String archive) {
+        List<String> runtimeOptions = new ArrayList<>(getUnlockOptions(System.getProperty("java.specification.version")));
+        runtimeOptions.add("-Xshare:auto");
+        runtimeOptions.add("-XX:SharedArchiveFile=" + archive);
+        return runtimeOptions;
+    }
+
+    /**
+     * Returns the cached archive or creates a new one by profiling the application.
+     *
+     * @param mainJar the main jar inside the app-folder, referring to all other jar-files via its manifest
+     * @param mainClass the class to start
+     * @param profilingJvmArgs additional arguments for the JVM while profiling
+     * @param markerClass profiling stops as soon as this class got loaded, might be null
+     * @param timeoutSeconds profiling stops after this time
+     * @return the archive, or null when nothing could be recorded
+     * @throws IOException when profiling or dumping failed, or when the JVM does not accept the archive after moving
+     * the application
+     */
+    public File createArchive(File mainJar, String mainClass, List<String> profilingJvmArgs, String markerClass, int timeoutSeconds) throws IOException {
+        List<File> classPath = getClassPath(mainJar);
+        String cacheKey = createCacheKey(mainJar, classPath, mainClass, profilingJvmArgs, markerClass);
+        File cachedArchive = new File(cacheDirectory, cacheKey + ARCHIVE_EXTENSION);
+        if( cachedArchive.isFile() ){
+            getLog().info("Using cached AppCDS archive " + cachedArchive);
+            return cachedArchive;
+        }
+        Files.createDirectories(cacheDirectory.toPath());
+
+        List<String> jvmArgs = new ArrayList<>(getUnlockOptions(System.getProperty("java.specification.version")));
+        jvmArgs.addAll(profilingJvmArgs);
+        ApplicationProfiler.ProfilingResult profilingResult = profiler.profile(Collections.singletonList(mainJar), mainClass, jvmArgs, markerClass, timeoutSeconds);
+        if( markerClass != null && !profilingResult.isMarkerReached() ){
+            getLog().warn(String.format("Marker class %s was not loaded while profiling application, using all classes loaded within %s ms", markerClass, profilingResult.getDurationMillis()));
+        } else if( markerClass == null && profilingResult.isTimedOut() ){
+            getLog().info(String.format("Stopped profiling application after %s seconds", timeoutSeconds));
+        }
+        List<String> classList = toClassList(profilingResult.getLoadedClasses());
+        if( classList.isEmpty() ){
+            return null;
+        }
+        File classListFile = new File(cacheDirectory, cacheKey + CLASSLIST_EXTENSION);
+        Files.write(classListFile.toPath(), classList, StandardCharsets.UTF_8);
+
+        Path temporaryArchive = Files.createTempFile(cacheDirectory.toPath(), cacheKey, ".tmp");
+        try{
+            dumpArchive(mainJar, classListFile, temporaryArchive.toFile());
+            if( !isAcceptedAfterRelocation(mainJar, classPath, temporaryArchive.toFile(), cacheKey) ){
+                throw new IOException(String.format("JVM %s does not accept AppCDS archives after the application got moved (like when installing the bundle)", System.getProperty("java.vm.version")));
+            }
+            try{
+                Files.move(temporaryArchive, cachedArchive.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch(AtomicMoveNotSupportedException ex){
+                Files.move(temporaryArchive, cachedArchive.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally{
+            Files.deleteIfExists(temporaryArchive);
+        }
+        getLog().info(String.format("Created AppCDS archive %s containing %s classes", cachedArchive, classList.size()));
+        return cachedArchive;
+    }
+
+    /**
+     * @param mainJar the main jar
+     * @return the main jar and all entries of its "Class-Path" manifest-entry, as the JVM resolves them
+     * @throws IOException when the main jar could not be read
+     */
+    static List<File> getClassPath(File mainJar) throws IOException {
+        List<File> classPath = new ArrayList<>();
+        classPath.add(mainJar);
+        try(JarFile jarFile = new JarFile(mainJar)){
+            Manifest manifest = jarFile.getManifest();
+            String manifestClassPath = manifest == null ? null : manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+            if( manifestClassPath == null ){
+                return classPath;
+            }
+            for( String classPathEntry : manifestClassPath.trim().split("\\s+") ){
+                if( !classPathEntry.isEmpty() ){
+                    classPath.add(new File(mainJar.getAbsoluteFile().getParentFile(), classPathEntry));
+                }
+            }
+        }
+        return classPath;
+    }
+
+    private String createCacheKey(File mainJar, List<File> classPath, String mainClass, List<String> profilingJvmArgs, String markerClass) throws IOException {
+        StringBuilder cacheKey = new StringBuilder();
+        // archives only work with the same JVM they were created with
+        cacheKey.append(profiler.getJavaExecutable().getAbsolutePath()).append('\n');
+        cacheKey.append(System.getProperty("java.vm.version")).append('\n');
+        cacheKey.append(mainClass).append('\n').append(markerClass).append('\n');
+        cacheKey.append(String.join(" ", profilingJvmArgs)).append('\n');
+        Path appFolder = mainJar.getAbsoluteFile().getParentFile().toPath();
+        for( File classPathEntry : classPath ){
+            // only the layout inside the app-folder is checked by the JVM, as the archive has to work after moving it
+            cacheKey.append(appFolder.relativize(classPathEntry.getAbsoluteFile().toPath())).append('=').append(classPathEntry.isFile() ? InputFingerprint.hash(classPathEntry.toPath()) : "").append('\n');
+        }
+        return InputFingerprint.hash(cacheKey.toString());
+    }
+
+    /**
+     * The class-list uses internal names, generated classes (lambdas, proxies) can't be archived.
+     */
+    private static List<String> toClassList(List<String> loadedClasses) {
+        return loadedClasses.stream()
+                .filter(loadedClass -> !loadedClass.contains("/") && !loadedClass.contains("$$Lambda$") && !loadedClass.startsWith("com.sun.proxy.") && !loadedClass.startsWith("jdk.proxy"))
+                .map(loadedClass -> loadedClass.replace('.', '/'))
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    private void dumpArchive(File mainJar, File classListFile, File archive) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(profiler.getJavaExecutable().getAbsolutePath());
+        command.addAll(getUnlockOptions(System.getProperty("java.specification.version")));
+        command.add("-Xshare:dump");
+        command.add("-XX:SharedClassListFile=" + classListFile.getAbsolutePath());
+        command.add("-XX:SharedArchiveFile=" + archive.getAbsolutePath());
+        // same classpath as the native launcher, the manifest of the main jar refers to all other jar-files
+        command.add("-cp");
+        command.add(mainJar.getAbsolutePath());
+        List<String> output = new ArrayList<>();
+        int exitCode = runJava(command, output);
+        if( exitCode != 0 || archive.length() == 0 ){
+            String lastLine = output.isEmpty() ? "no output" : output.get(output.size() - 1);
+            throw new IOException(String.format("JVM failed to create AppCDS archive (exit code %s): %s", exitCode, lastLine));
+        }
+    }
+
+    /**
+     * Copies all classpath-entries into some other folder, keeping their layout, and starts the JVM requiring the
+     * archive from there.
+     */
+    private boolean isAcceptedAfterRelocation(File mainJar, List<File> classPath, File archive, String cacheKey) throws IOException {
+        Path appFolder = mainJar.getAbsoluteFile().getParentFile().toPath();
+        Path temporaryFolder = Files.createTempDirectory(cacheDirectory.toPath(), cacheKey);
+        try{
+            Path relocatedAppFolder = temporaryFolder.resolve(RELOCATED_APP_FOLDER);
+            for( File classPathEntry : classPath ){
+                if( !classPathEntry.isFile() ){
+                    continue;
+                }
+                Path relocatedEntry = relocatedAppFolder.resolve(appFolder.relativize(classPathEntry.getAbsoluteFile().toPath())).normalize();
+                Files.createDirectories(relocatedEntry.getParent());
+                // no links, the JVM would detect the same files, and the JVM checks size and modification time
+                Files.copy(classPathEntry.toPath(), relocatedEntry, StandardCopyOption.COPY_ATTRIBUTES);
+            }
+            List<String> command = new ArrayList<>();
+            command.add(profiler.getJavaExecutable().getAbsolutePath());
+            command.addAll(getUnlockOptions(System.getProperty("java.specification.version")));
+            command.add("-Xshare:on");
+            command.add("-XX:SharedArchiveFile=" + archive.getAbsolutePath());
+            command.add("-cp");
+            command.add(relocatedAppFolder.resolve(mainJar.getName()).toString());
+            command.add("-version");
+            return runJava(command, new ArrayList<>()) == 0;
+        } finally{
+            FileStager.deleteRecursive(temporaryFolder);
+        }
+    }
+
+    private int runJava(List<String> command, List<String> output) throws IOException {
+        getLog().debug("Running JVM for AppCDS archive: " + String.join(" ", command));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), Charset.defaultCharset()))){
+            String line;
+            while( (line = reader.readLine()) != null ){
+                getLog().debug("[cds] " + line);
+                output.add(line);
+            }
+        }
+        try{
+            return process.waitFor();
+        } catch(InterruptedException ex){
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while creating AppCDS archive", ex);
+        }
+    }
+}
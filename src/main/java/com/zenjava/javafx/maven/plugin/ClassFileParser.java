@@ -0,0 +1,197 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the constant pool of some class-file and collects all classes it refers to. This includes class-constants,
+ * all types inside descriptors and signatures (fields, methods, annotations) and string-constants looking like some
+ * class-name (e.g. for Class.forName), so the result is conservative: it might contain classes which don't exist.
+ * <p>
+ * All class-names are internal names, like "java/lang/String".
+ */
+public class ClassFileParser {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    // "Lsome/package/SomeClass;" or "Lsome/package/SomeClass<" (inside generic signatures)
+    private static final Pattern DESCRIPTOR_TYPE = Pattern.compile("L([\\p{javaJavaIdentifierPart}/]+)[;<]");
+    private static final Pattern CLASS_NAME = Pattern.compile("[\\p{javaJavaIdentifierStart}][\\p{javaJavaIdentifierPart}]*(\\.[\\p{javaJavaIdentifierStart}][\\p{javaJavaIdentifierPart}]*)+");
+
+    private ClassFileParser() {
+        // utility class
+    }
+
+    /**
+     * @param classFile the content of the class-file
+     * @return the name of the class and all classes it refers to
+     * @throws IOException when this is no valid class-file
+     */
+    public static ClassInfo parse(byte[] classFile) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(classFile));
+        if( in.readInt() != MAGIC ){
+            throw new IOException("Not a class-file (wrong magic number)");
+        }
+        // minor and major version
+        in.readUnsignedShort();
+        int majorVersion = in.readUnsignedShort();
+
+        int constantPoolCount = in.readUnsignedShort();
+        String[] utf8Constants = new String[constantPoolCount];
+        int[] classConstants = new int[constantPoolCount];
+        boolean[] stringConstants = new boolean[constantPoolCount];
+        int[] stringIndexes = new int[constantPoolCount];
+        for( int index = 1; index < constantPoolCount; index++ ){
+            int tag = in.readUnsignedByte();
+            switch(tag){
+                case CONSTANT_UTF8:
+                    utf8Constants[index] = in.readUTF();
+                    break;
+                case CONSTANT_CLASS:
+                    classConstants[index] = in.readUnsignedShort();
+                    break;
+                case CONSTANT_STRING:
+                    stringConstants[index] = true;
+                    stringIndexes[index] = in.readUnsignedShort();
+                    break;
+                case CONSTANT_METHOD_TYPE:
+                case CONSTANT_MODULE:
+                case CONSTANT_PACKAGE:
+                    in.readUnsignedShort();
+                    break;
+                case CONSTANT_METHOD_HANDLE:
+                    in.readUnsignedByte();
+                    in.readUnsignedShort();
+                    break;
+                case CONSTANT_INTEGER:
+                case CONSTANT_FLOAT:
+                case CONSTANT_NAME_AND_TYPE:
+                case CONSTANT_FIELDREF:
+                case CONSTANT_METHODREF:
+                case CONSTANT_INTERFACE_METHODREF:
+                case CONSTANT_DYNAMIC:
+                case CONSTANT_INVOKE_DYNAMIC:
+                    in.readInt();
+                    break;
+                case CONSTANT_LONG:
+                case CONSTANT_DOUBLE:
+                    in.readLong();
+                    // these take two slots
+                    index++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag + " at index " + index);
+            }
+        }
+        // access flags
+        in.readUnsignedShort();
+        int thisClass = in.readUnsignedShort();
+        String className = utf8Constants[classConstants[thisClass]];
+
+        Set<String> references = new TreeSet<>();
+        for( int index = 1; index < constantPoolCount; index++ ){
+            if( classConstants[index] != 0 ){
+                addClassConstant(utf8Constants[classConstants[index]], references);
+            } else if( stringConstants[index] ){
+                String value = utf8Constants[stringIndexes[index]];
+                if( value != null && CLASS_NAME.matcher(value).matches() ){
+                    references.add(value.replace('.', '/'));
+                }
+            } else if( utf8Constants[index] != null && utf8Constants[index].indexOf(';') > 0 ){
+                // field- and method-descriptors, signatures and annotation-types are all some UTF8-constant
+                addDescriptorTypes(utf8Constants[index], references);
+            }
+        }
+        references.remove(className);
+        return new ClassInfo(className, majorVersion, references);
+    }
+
+    private static void addClassConstant(String value, Set<String> references) {
+        if( value == null ){
+            return;
+        }
+        if( value.startsWith("[") ){
+            // array-types are descriptors
+            addDescriptorTypes(value, references);
+        } else {
+            references.add(value);
+        }
+    }
+
+    private static void addDescriptorTypes(String descriptor, Set<String> references) {
+        Matcher matcher = DESCRIPTOR_TYPE.matcher(descriptor);
+        while( matcher.find() ){
+            references.add(matcher.group(1));
+        }
+    }
+
+    public static class ClassInfo {
+
+        private final String name;
+        private final int majorVersion;
+        private final Set<String> references;
+
+        ClassInfo(String name, int majorVersion, Set<String> references) {
+            this.name = name;
+            this.majorVersion = majorVersion;
+            this.references = Collections.unmodifiableSet(references);
+        }
+
+        /**
+         * @return the internal name of the class, like "java/lang/String"
+         */
+        public String getName() {
+            return name;
+        }
+
+        public int getMajorVersion() {
+            return majorVersion;
+        }
+
+        /**
+         * @return the internal names of all referenced classes (without the class itself), sorted
+         */
+        public Set<String> getReferences() {
+            return references;
+        }
+    }
+}
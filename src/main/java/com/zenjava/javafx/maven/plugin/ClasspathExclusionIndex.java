@@ -0,0 +1,135 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zenjava.javafx.maven.plugin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.Dependency;
+
+/**
+ * Precomputed lookup for &lt;classpathExcludes&gt;. Exact coordinates are found by some hash-lookup, so checking
+ * some artifact (or its whole dependency-trail) does not depend on the number of excludes.
+ * <p>
+ * Both groupId and artifactId may contain "*" as wildcard, like "org.foo:*" for excluding a whole group.
+ */
+public class ClasspathExclusionIndex {
+
+    private static final String WILDCARD = "*";
+
+    // "groupId:artifactId" -> rule
+    private final Map<String, String> exactRules = new HashMap<>();
+    // groupId -> rule, for "groupId:*"
+    private final Map<String, String> groupRules = new HashMap<>();
+    private final List<PatternRule> patternRules = new ArrayList<>();
+
+    public ClasspathExclusionIndex(List<Dependency> classpathExcludes) {
+        for( Dependency dependency : classpathExcludes ){
+            String groupId = dependency.getGroupId() == null ? WILDCARD : dependency.getGroupId().trim();
+            String artifactId = dependency.getArtifactId() == null ? WILDCARD : dependency.getArtifactId().trim();
+            String rule = groupId + ":" + artifactId;
+            if( !groupId.contains(WILDCARD) && !artifactId.contains(WILDCARD) ){
+                exactRules.putIfAbsent(rule, rule);
+            } else if( !groupId.contains(WILDCARD) && WILDCARD.equals(artifactId) ){
+                groupRules.putIfAbsent(groupId, rule);
+            } else {
+                patternRules.add(new PatternRule(rule, toPattern(groupId), toPattern(artifactId)));
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return exactRules.isEmpty() && groupRules.isEmpty() && patternRules.isEmpty();
+    }
+
+    /**
+     * Searches the rule responsible for excluding the given artifact.
+     *
+     * @param artifact the artifact to check
+     * @param transitive when true, the whole dependency-trail of the artifact is checked, otherwise only the artifact
+     * itself
+     * @return the matching rule (including the matching trail-element when being transitive), or null when the
+     * artifact is not excluded
+     */
+    public String findExclusion(Artifact artifact, boolean transitive) {
+        if( !transitive || artifact.getDependencyTrail() == null ){
+            return findRule(artifact.getGroupId(), artifact.getArtifactId());
+        }
+        for( String dependencyTrail : artifact.getDependencyTrail() ){
+            // trail-elements are "groupId:artifactId:type:version", we don't care about versions nor types
+            int groupEnd = dependencyTrail.indexOf(':');
+            if( groupEnd < 0 ){
+                continue;
+            }
+            int artifactEnd = dependencyTrail.indexOf(':', groupEnd + 1);
+            String groupId = dependencyTrail.substring(0, groupEnd);
+            String artifactId = artifactEnd < 0 ? dependencyTrail.substring(groupEnd + 1) : dependencyTrail.substring(groupEnd + 1, artifactEnd);
+            String rule = findRule(groupId, artifactId);
+            if( rule != null ){
+                return rule + " (via " + groupId + ":" + artifactId + ")";
+            }
+        }
+        return null;
+    }
+
+    private String findRule(String groupId, String artifactId) {
+        String rule = exactRules.get(groupId + ":" + artifactId);
+        if( rule != null ){
+            return rule;
+        }
+        rule = groupRules.get(groupId);
+        if( rule != null ){
+            return rule;
+        }
+        for( PatternRule patternRule : patternRules ){
+            if( patternRule.matches(groupId, artifactId) ){
+                return patternRule.rule;
+            }
+        }
+        return null;
+    }
+
+    private static Pattern toPattern(String value) {
+        StringBuilder regex = new StringBuilder();
+        for( String part : value.split("\\*", -1) ){
+            if( regex.length() > 0 ){
+                regex.append(".*");
+            }
+            regex.append(Pattern.quote(part));
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    private static class PatternRule {
+
+        private final String rule;
+        private final Pattern groupPattern;
+        private final Pattern artifactPattern;
+
+        PatternRule(String rule, Pattern groupPattern, Pattern artifactPattern) {
+            this.rule = rule;
+            this.groupPattern = groupPattern;
+            this.artifactPattern = artifactPattern;
+        }
+
+        boolean matches(String groupId, String artifactId) {
+            return groupPattern.matcher(groupId).matches() && artifactPattern.matcher(artifactId).matches();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zenjava.javafx.maven.plugin;
+
+/**
+ * Creates the JavaFX JAR (including the lib-folder) and reports the packages, JDK modules and split packages of all
+ * its jar-files as JSON.
+ *
+ * @goal dependency-report
+ * @execute goal="jar"
+ */
+public class CliDependencyReportMojo extends DependencyReportMojo {
+    // NO-OP
+}
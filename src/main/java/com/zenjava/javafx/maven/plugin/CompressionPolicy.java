@@ -0,0 +1,148 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zenjava.javafx.maven.plugin;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Decides per entry (by its file-extension) how it gets written into the jar-file. Already compressed payloads
+ * (images, media, nested archives) don't get any smaller, deflating them only costs time while building and
+ * while loading them.
+ * <p>
+ * Possible rules are:
+ * <ul>
+ * <li><b>store</b> - no compression at all</li>
+ * <li><b>deflate</b> or <b>deflate:N</b> - deflate using the default or the given level (0-9)</li>
+ * <li><b>N</b> - shortcut for deflate:N</li>
+ * <li><b>auto</b> or <b>auto:N</b> - deflate, but store the entry when compressing doesn't save at least 10%</li>
+ * </ul>
+ * The extension "*" replaces the default rule for all other entries.
+ */
+public class CompressionPolicy {
+
+    public static final String DEFAULT_EXTENSION = "*";
+
+    /**
+     * When compressing results in more than this ratio of the original size, the auto-rule stores the entry.
+     */
+    static final double AUTO_STORE_RATIO = 0.9;
+
+    static final Rule STORE_RULE = new Rule(Kind.STORE, 0);
+
+    private final Map<String, Rule> rulesByExtension = new HashMap<>();
+    private Rule defaultRule;
+
+    public CompressionPolicy(int defaultLevel) {
+        this.defaultRule = new Rule(Kind.DEFLATE, defaultLevel);
+    }
+
+    /**
+     * @param extension the file-extension (without dot, case does not matter) or "*" for all other entries
+     * @param rule the rule to apply
+     * @throws IllegalArgumentException when the rule has some unknown format
+     */
+    public void addRule(String extension, String rule) {
+        Rule parsedRule = parseRule(rule);
+        String normalizedExtension = extension.trim().toLowerCase(Locale.ROOT);
+        if( normalizedExtension.startsWith(".") ){
+            normalizedExtension = normalizedExtension.substring(1);
+        }
+        if( DEFAULT_EXTENSION.equals(normalizedExtension) ){
+            defaultRule = parsedRule;
+        } else {
+            rulesByExtension.put(normalizedExtension, parsedRule);
+        }
+    }
+
+    public Rule getRule(String entryName) {
+        String fileName = entryName.substring(entryName.lastIndexOf('/') + 1);
+        int extensionStart = fileName.lastIndexOf('.');
+        if( extensionStart < 0 ){
+            return defaultRule;
+        }
+        return rulesByExtension.getOrDefault(fileName.substring(extensionStart + 1).toLowerCase(Locale.ROOT), defaultRule);
+    }
+
+    private Rule parseRule(String rule) {
+        if( rule == null ){
+            throw new IllegalArgumentException("Missing compression rule");
+        }
+        String normalizedRule = rule.trim().toLowerCase(Locale.ROOT);
+        String[] parts = normalizedRule.split(":", 2);
+        try{
+            switch(parts[0]){
+                case "store":
+                    if( parts.length == 1 ){
+                        return STORE_RULE;
+                    }
+                    break;
+                case "deflate":
+                    return new Rule(Kind.DEFLATE, parts.length == 1 ? Deflater.DEFAULT_COMPRESSION : parseLevel(parts[1]));
+                case "auto":
+                    return new Rule(Kind.AUTO, parts.length == 1 ? Deflater.DEFAULT_COMPRESSION : parseLevel(parts[1]));
+                default:
+                    if( parts.length == 1 ){
+                        return new Rule(Kind.DEFLATE, parseLevel(parts[0]));
+                    }
+            }
+        } catch(NumberFormatException ex){
+            // handled below
+        }
+        throw new IllegalArgumentException("Unknown compression rule \"" + rule + "\", possible values are: store, deflate, deflate:N, N, auto, auto:N");
+    }
+
+    private int parseLevel(String level) {
+        int parsedLevel = Integer.parseInt(level.trim());
+        if( parsedLevel < Deflater.NO_COMPRESSION || parsedLevel > Deflater.BEST_COMPRESSION ){
+            throw new NumberFormatException("Compression level has to be between 0 and 9, but was " + parsedLevel);
+        }
+        return parsedLevel;
+    }
+
+    public enum Kind {
+        STORE, DEFLATE, AUTO
+    }
+
+    public static class Rule {
+
+        private final Kind kind;
+        private final int level;
+
+        Rule(Kind kind, int level) {
+            this.kind = kind;
+            this.level = level;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        @Override
+        public String toString() {
+            if( kind == Kind.STORE ){
+                return "store";
+            }
+            return kind.name().toLowerCase(Locale.ROOT) + (level == Deflater.DEFAULT_COMPRESSION ? "" : ":" + level);
+        }
+    }
+}
@@ -0,0 +1,412 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.ProviderNotFoundException;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Finds out which packages every jar-file contains and refers to, which modules of the JDK it requires and which
+ * packages are split across multiple jar-files (or some jar-file and the JDK), like jdeps does. All jar-files get
+ * analyzed in parallel.
+ * <p>
+ * The summary of every jar-file gets cached by its hash, so unchanged jar-files never get parsed again. Summaries
+ * don't depend on the JDK, the mapping to modules always uses the JDK running this build.
+ */
+public class DependencyAnalyzer {
+
+    /**
+     * Name of the cache-folder inside 'target/jfx'.
+     */
+    public static final String CACHE_FOLDER = "dependency-cache";
+
+    private static final String CLASS_EXTENSION = ".class";
+    private static final String JAR_EXTENSION = ".jar";
+    private static final String SUMMARY_EXTENSION = ".packages";
+    // bump this when changing the format of cached summaries
+    private static final String SUMMARY_VERSION = "1";
+    private static final String BASE_MODULE = "java.base";
+
+    private final int threads;
+    private final File cacheDirectory;
+    private final Log logger;
+
+    public DependencyAnalyzer(int threads, File cacheDirectory, Log logger) {
+        this.threads = Math.max(1, threads);
+        this.cacheDirectory = cacheDirectory;
+        this.logger = logger;
+    }
+
+    public Log getLog() {
+        return logger;
+    }
+
+    /**
+     * @param jarFiles all jar-files to analyze
+     * @return the analysis of every jar-file, in the given order
+     * @throws IOException when some jar-file could not be read
+     */
+    public Result analyze(List<File> jarFiles) throws IOException {
+        Map<String, Set<String>> modulesByPackage = readJdkPackages();
+        if( modulesByPackage.isEmpty() ){
+            getLog().warn("The JVM running this build has no module image (requires Java 9 or newer), JDK modules can't be reported");
+        }
+        Result result = new Result(modulesByPackage);
+        if( jarFiles.isEmpty() ){
+            return result;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, jarFiles.size()));
+        try{
+            Map<File, Future<JarAnalysis>> futures = new LinkedHashMap<>();
+            for( File jarFile : jarFiles ){
+                futures.put(jarFile, executor.submit(() -> analyze(jarFile, modulesByPackage)));
+            }
+            for( Map.Entry<File, Future<JarAnalysis>> future : futures.entrySet() ){
+                result.jars.put(future.getKey(), future.getValue().get());
+            }
+        } catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while analyzing jar-files", ex);
+        } catch(ExecutionException ex){
+            if( ex.getCause() instanceof IOException ){
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException("Error while analyzing jar-files", ex.getCause());
+        } finally{
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    /**
+     * @param folder some folder containing jar-files, like the app-folder
+     * @return all jar-files inside this folder (searched recursively), sorted by their path
+     * @throws IOException when the folder could not be read
+     */
+    public static List<File> findJarFiles(File folder) throws IOException {
+        List<File> jarFiles = new ArrayList<>();
+        if( !folder.isDirectory() ){
+            return jarFiles;
+        }
+        // try-ressource, because walking on files is lazy, resulting in file-handler left open otherwise
+        try(Stream<Path> walkstream = Files.walk(folder.toPath())){
+            walkstream.filter(Files::isRegularFile)
+                    .filter(path -> path.getFileName().toString().toLowerCase().endsWith(JAR_EXTENSION))
+                    .sorted()
+                    .forEach(path -> jarFiles.add(path.toFile()));
+        }
+        return jarFiles;
+    }
+
+    /**
+     * Reads all packages of the JDK running this build, using the "jrt:/"-filesystem.
+     *
+     * @return the modules containing every package, empty when running on Java 8
+     * @throws IOException when the module image could not be read
+     */
+    public static Map<String, Set<String>> readJdkPackages() throws IOException {
+        FileSystem jrt;
+        try{
+            jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+        } catch(FileSystemNotFoundException | ProviderNotFoundException ex){
+            return Collections.emptyMap();
+        }
+        Map<String, Set<String>> modulesByPackage = new TreeMap<>();
+        // "/packages/<package>/<module>" exists for every package of every module
+        try(DirectoryStream<Path> packages = Files.newDirectoryStream(jrt.getPath("/packages"))){
+            for( Path packageFolder : packages ){
+                Set<String> modules = new TreeSet<>();
+                try(DirectoryStream<Path> packageModules = Files.newDirectoryStream(packageFolder)){
+                    packageModules.forEach(module -> modules.add(module.getFileName().toString()));
+                }
+                modulesByPackage.put(packageFolder.getFileName().toString(), modules);
+            }
+        }
+        return modulesByPackage;
+    }
+
+    private JarAnalysis analyze(File jarFile, Map<String, Set<String>> modulesByPackage) throws IOException {
+        String hash = InputFingerprint.hash(jarFile.toPath());
+        File cachedSummary = new File(cacheDirectory, hash + SUMMARY_EXTENSION);
+        JarSummary summary = null;
+        boolean cached = false;
+        if( cachedSummary.isFile() ){
+            try{
+                summary = JarSummary.read(cachedSummary);
+                cached = true;
+            } catch(IOException | RuntimeException ex){
+                getLog().debug("Ignoring broken cached package-summary " + cachedSummary + ": " + ex.getMessage());
+            }
+        }
+        if( summary == null ){
+            summary = summarizeJar(jarFile);
+            try{
+                Files.createDirectories(cacheDirectory.toPath());
+                summary.write(cachedSummary);
+            } catch(IOException ex){
+                getLog().debug("Couldn't cache package-summary of " + jarFile + ": " + ex.getMessage());
+            }
+        }
+        return new JarAnalysis(hash, cached, summary, modulesByPackage);
+    }
+
+    private JarSummary summarizeJar(File jarFile) throws IOException {
+        getLog().debug("Analyzing packages of " + jarFile);
+        JarSummary summary = new JarSummary();
+        try(ZipFile zipFile = new ZipFile(jarFile)){
+            for( ZipEntry zipEntry : Collections.list(zipFile.entries()) ){
+                String entryName = zipEntry.getName();
+                // multi-release classes are always next to their default version
+                if( zipEntry.isDirectory() || !entryName.endsWith(CLASS_EXTENSION) || entryName.startsWith("META-INF/") || entryName.endsWith("module-info" + CLASS_EXTENSION) ){
+                    continue;
+                }
+                summary.classCount++;
+                summary.packages.add(getPackage(entryName));
+                try(InputStream in = zipFile.getInputStream(zipEntry)){
+                    ClassFileParser.parse(readFully(in)).getReferences().forEach(reference -> summary.referencedPackages.add(getPackage(reference)));
+                } catch(IOException ex){
+                    getLog().debug(String.format("Skipping %s inside %s: %s", entryName, jarFile, ex.getMessage()));
+                }
+            }
+        }
+        summary.referencedPackages.removeAll(summary.packages);
+        summary.referencedPackages.remove("");
+        return summary;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while( (read = in.read(buffer)) != -1 ){
+            content.write(buffer, 0, read);
+        }
+        return content.toByteArray();
+    }
+
+    /**
+     * @return the package as used by the JDK, like "java.lang" for "java/lang/String"
+     */
+    private static String getPackage(String className) {
+        int packageEnd = className.lastIndexOf('/');
+        return packageEnd < 0 ? "" : className.substring(0, packageEnd).replace('/', '.');
+    }
+
+    /**
+     * Everything we need to know about the classes of one jar-file.
+     */
+    private static class JarSummary {
+
+        private static final String CLASS_COUNT_LINE = "C";
+        private static final String PACKAGE_LINE = "P";
+        private static final String REFERENCE_LINE = "R";
+
+        private int classCount = 0;
+        private final Set<String> packages = new TreeSet<>();
+        private final Set<String> referencedPackages = new TreeSet<>();
+
+        static JarSummary read(File file) throws IOException {
+            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            if( lines.isEmpty() || !SUMMARY_VERSION.equals(lines.get(0)) ){
+                throw new IOException("Unsupported version");
+            }
+            JarSummary summary = new JarSummary();
+            for( String line : lines.subList(1, lines.size()) ){
+                String[] parts = line.split(" ", 2);
+                String value = parts.length > 1 ? parts[1] : "";
+                switch(parts[0]){
+                    case CLASS_COUNT_LINE:
+                        summary.classCount = Integer.parseInt(value);
+                        break;
+                    case PACKAGE_LINE:
+                        summary.packages.add(value);
+                        break;
+                    case REFERENCE_LINE:
+                        summary.referencedPackages.add(value);
+                        break;
+                    default:
+                        throw new IOException("Unknown line: " + line);
+                }
+            }
+            return summary;
+        }
+
+        void write(File file) throws IOException {
+            List<String> lines = new ArrayList<>();
+            lines.add(SUMMARY_VERSION);
+            lines.add(CLASS_COUNT_LINE + " " + classCount);
+            packages.forEach(containedPackage -> lines.add(PACKAGE_LINE + " " + containedPackage));
+            referencedPackages.forEach(referencedPackage -> lines.add(REFERENCE_LINE + " " + referencedPackage));
+
+            // write into some temporary file first, other builds might read the same cache
+            Path temporaryFile = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+            try{
+                Files.write(temporaryFile, lines, StandardCharsets.UTF_8);
+                try{
+                    Files.move(temporaryFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch(AtomicMoveNotSupportedException ex){
+                    Files.move(temporaryFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally{
+                Files.deleteIfExists(temporaryFile);
+            }
+        }
+    }
+
+    public static class JarAnalysis {
+
+        private final String hash;
+        private final boolean cached;
+        private final int classCount;
+        private final Set<String> packages;
+        private final Set<String> referencedPackages;
+        private final Set<String> jdkModules = new TreeSet<>();
+
+        JarAnalysis(String hash, boolean cached, JarSummary summary, Map<String, Set<String>> modulesByPackage) {
+            this.hash = hash;
+            this.cached = cached;
+            this.classCount = summary.classCount;
+            this.packages = Collections.unmodifiableSet(summary.packages);
+            this.referencedPackages = Collections.unmodifiableSet(summary.referencedPackages);
+            referencedPackages.forEach(referencedPackage -> jdkModules.addAll(modulesByPackage.getOrDefault(referencedPackage, Collections.emptySet())));
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        /**
+         * @return true when the summary was taken from the cache
+         */
+        public boolean isCached() {
+            return cached;
+        }
+
+        public int getClassCount() {
+            return classCount;
+        }
+
+        /**
+         * @return all packages containing some class of this jar-file
+         */
+        public Set<String> getPackages() {
+            return packages;
+        }
+
+        /**
+         * @return all packages referenced by this jar-file, without its own packages
+         */
+        public Set<String> getReferencedPackages() {
+            return referencedPackages;
+        }
+
+        /**
+         * @return all modules of the JDK containing some referenced package
+         */
+        public Set<String> getJdkModules() {
+            return Collections.unmodifiableSet(jdkModules);
+        }
+    }
+
+    public static class Result {
+
+        private final Map<String, Set<String>> modulesByPackage;
+        private final Map<File, JarAnalysis> jars = new LinkedHashMap<>();
+
+        Result(Map<String, Set<String>> modulesByPackage) {
+            this.modulesByPackage = modulesByPackage;
+        }
+
+        public Map<File, JarAnalysis> getJars() {
+            return Collections.unmodifiableMap(jars);
+        }
+
+        /**
+         * @return all modules of the JDK required by any jar-file, including "java.base" (empty on Java 8)
+         */
+        public Set<String> getRequiredJdkModules() {
+            Set<String> requiredModules = new TreeSet<>();
+            if( modulesByPackage.isEmpty() ){
+                return requiredModules;
+            }
+            requiredModules.add(BASE_MODULE);
+            jars.values().forEach(jar -> requiredModules.addAll(jar.getJdkModules()));
+            return requiredModules;
+        }
+
+        /**
+         * @return all packages contained in more than one jar-file or in some jar-file and the JDK, with the names of
+         * these jar-files (and "jrt:/" plus the module for the JDK)
+         */
+        public Map<String, List<String>> getSplitPackages() {
+            Map<String, List<String>> ownersByPackage = new TreeMap<>();
+            jars.forEach((jarFile, jar) -> {
+                jar.getPackages().forEach(containedPackage -> ownersByPackage.computeIfAbsent(containedPackage, key -> new ArrayList<>()).add(jarFile.getName()));
+            });
+            Map<String, List<String>> splitPackages = new TreeMap<>();
+            ownersByPackage.forEach((splitPackage, owners) -> {
+                Collection<String> jdkModules = modulesByPackage.getOrDefault(splitPackage, Collections.emptySet());
+                if( owners.size() + jdkModules.size() > 1 ){
+                    List<String> allOwners = new ArrayList<>(owners);
+                    jdkModules.forEach(jdkModule -> allOwners.add("jrt:/" + jdkModule));
+                    splitPackages.put(splitPackage, allOwners);
+                }
+            });
+            return splitPackages;
+        }
+
+        /**
+         * @return amount of jar-files whose summary was taken from the cache
+         */
+        public long getCachedJarCount() {
+            return jars.values().stream().filter(JarAnalysis::isCached).count();
+        }
+
+        public String getSummary() {
+            return String.format("%s jar-files (%s from cache), %s JDK modules required, %s split packages", jars.size(), getCachedJarCount(), getRequiredJdkModules().size(), getSplitPackages().size());
+        }
+    }
+}
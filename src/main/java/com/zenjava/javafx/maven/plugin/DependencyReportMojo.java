@@ -0,0 +1,117 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+/**
+ * Analyzes all jar-files inside the app-folder like jdeps does: the packages every jar-file contains and refers to,
+ * the required modules of the JDK and all split packages. The report gets written as JSON and printed to the log.
+ * <p>
+ * The analysis of every jar-file gets cached by its hash inside 'target/jfx/dependency-cache', so only changed
+ * jar-files get analyzed again.
+ *
+ * @goal build-dependency-report
+ * @since 8.6.0
+ */
+public class DependencyReportMojo extends AbstractJfxToolsMojo {
+
+    /**
+     * The file to write the JSON-report to.
+     *
+     * @parameter property="jfx.dependencyReportFile" default-value="${project.build.directory}/jfx/dependency-report.json"
+     * @since 8.6.0
+     */
+    protected File dependencyReportFile;
+
+    /**
+     * Amount of threads used for analyzing jar-files, defaults to the amount of available processors.
+     *
+     * @parameter property="jfx.dependencyAnalysisThreads" default-value=0
+     * @since 8.6.0
+     */
+    protected int dependencyAnalysisThreads;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        startBuildReport("build-dependency-report");
+        try{
+            createDependencyReport();
+        } finally{
+            finishBuildReport();
+        }
+    }
+
+    private void createDependencyReport() throws MojoExecutionException {
+        DependencyAnalyzer.Result analysis;
+        try(BuildReport.Stage stage = getBuildReport().startStage("analyze jar-files")){
+            List<File> jarFiles = DependencyAnalyzer.findJarFiles(jfxAppOutputDir);
+            if( jarFiles.isEmpty() ){
+                getLog().warn("No jar-files found inside " + jfxAppOutputDir + ", please create the JavaFX JAR first");
+            }
+            int threads = dependencyAnalysisThreads > 0 ? dependencyAnalysisThreads : Runtime.getRuntime().availableProcessors();
+            analysis = new DependencyAnalyzer(threads, new File(getJfxBuildDirectory(), DependencyAnalyzer.CACHE_FOLDER), getLog()).analyze(jarFiles);
+            jarFiles.forEach(stage::addOutput);
+        } catch(IOException ex){
+            throw new MojoExecutionException("Couldn't analyze jar-files inside " + jfxAppOutputDir, ex);
+        }
+
+        Map<String, Object> report = createReport(analysis);
+        try{
+            JsonWriter.write(report, dependencyReportFile);
+        } catch(IOException ex){
+            throw new MojoExecutionException("Couldn't write dependency report " + dependencyReportFile, ex);
+        }
+        for( String line : JsonWriter.toJson(report).split("\n") ){
+            getLog().info(line);
+        }
+        getLog().info("Analyzed " + analysis.getSummary() + ", report written to " + dependencyReportFile);
+    }
+
+    private Map<String, Object> createReport(DependencyAnalyzer.Result analysis) {
+        Map<String, Object> jdk = new LinkedHashMap<>();
+        jdk.put("version", System.getProperty("java.runtime.version"));
+        jdk.put("home", System.getProperty("java.home"));
+
+        List<Object> jars = new ArrayList<>();
+        analysis.getJars().forEach((jarFile, jar) -> {
+            Map<String, Object> jarReport = new LinkedHashMap<>();
+            jarReport.put("path", jfxAppOutputDir.toPath().relativize(jarFile.toPath()).toString().replace('\\', '/'));
+            jarReport.put("hash", jar.getHash());
+            jarReport.put("size", jarFile.length());
+            jarReport.put("classes", jar.getClassCount());
+            jarReport.put("packages", jar.getPackages());
+            jarReport.put("referencedPackages", jar.getReferencedPackages());
+            jarReport.put("jdkModules", jar.getJdkModules());
+            jars.add(jarReport);
+        });
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("jdk", jdk);
+        report.put("appFolder", jfxAppOutputDir.getAbsolutePath());
+        report.put("requiredJdkModules", analysis.getRequiredJdkModules());
+        report.put("splitPackages", analysis.getSplitPackages());
+        report.put("jars", jars);
+        return report;
+    }
+}
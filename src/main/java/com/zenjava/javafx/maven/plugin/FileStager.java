@@ -0,0 +1,453 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Copies files into some staging folder (like the lib-folder of the application), using a pool of threads when
+ * configured. This helps a lot when having hundreds of dependencies on slow (network-backed) disks.
+ * <p>
+ * Instead of copying every byte, files can be hard-linked or cloned (copy-on-write, when supported by the filesystem).
+ * When this is not possible (e.g. source and target are on different filesystems), a normal copy is made.
+ */
+public class FileStager {
+
+    public static final String MODE_COPY = "copy";
+    public static final String MODE_LINK = "link";
+    public static final String MODE_CLONE = "clone";
+
+    private static final boolean IS_WINDOWS = System.getProperty("os.name").toLowerCase().startsWith("windows");
+    private static final boolean IS_MAC = System.getProperty("os.name").toLowerCase().startsWith("mac");
+
+    private final Log logger;
+    private final int threads;
+    private final String mode;
+    private Long fixedTimestamp = null;
+
+    public FileStager(int threads, String mode, Log logger) {
+        this.threads = Math.max(1, threads);
+        this.logger = logger;
+        if( mode == null || MODE_COPY.equalsIgnoreCase(mode) ){
+            this.mode = MODE_COPY;
+        } else if( MODE_LINK.equalsIgnoreCase(mode) ){
+            this.mode = MODE_LINK;
+        } else if( MODE_CLONE.equalsIgnoreCase(mode) ){
+            this.mode = MODE_CLONE;
+        } else {
+            logger.warn(String.format("Unknown staging mode \"%s\", falling back to \"%s\". Possible values are: %s, %s, %s", mode, MODE_COPY, MODE_COPY, MODE_LINK, MODE_CLONE));
+            this.mode = MODE_COPY;
+        }
+    }
+
+    public Log getLog() {
+        return logger;
+    }
+
+    /**
+     * All copied files will get this last-modified time, making the staged folder reproducible. Linked files are not
+     * touched, as this would change the source-file too.
+     *
+     * @param fixedTimestamp milliseconds since epoch, or null to keep the time of the source-file
+     */
+    public void setFixedTimestamp(Long fixedTimestamp) {
+        this.fixedTimestamp = fixedTimestamp;
+    }
+
+    /**
+     * Synchronizes all source-files into the target-folder. Only new or changed files are copied, a file counts as
+     * changed when its size or modification-time (or content-hash, when enabled) differs from the last staging.
+     * Files which were staged before but are not part of the given files anymore get deleted.
+     *
+     * @param files the files to stage, all targets must be inside the target-folder
+     * @param targetFolder the folder which gets synchronized
+     * @param stateFile file for remembering what was staged (source-sizes, modification-times and hashes)
+     * @param compareHashes when true, the content-hash of the source is compared too
+     * @param previouslyStaged names (relative to the target-folder) of files staged by some earlier build without any
+     * state-file, these get deleted too when not expected anymore; all other files inside the target-folder are kept
+     * @return what has been done
+     */
+    public SyncResult sync(List<StagedFile> files, File targetFolder, File stateFile, boolean compareHashes, Collection<String> previouslyStaged) {
+        Properties previousState = new Properties();
+        if( stateFile.isFile() ){
+            try(InputStream in = Files.newInputStream(stateFile.toPath())){
+                previousState.load(in);
+            } catch(IOException ex){
+                getLog().debug("Couldn't read staging state, copying everything", ex);
+                previousState.clear();
+            }
+        }
+        Path targetFolderPath = targetFolder.toPath();
+        Properties newState = new Properties();
+        SyncResult result = new SyncResult();
+
+        List<SyncAction> actions = runInParallel(files, file -> {
+            String relativeName = relativeName(targetFolderPath, file.getTarget().toPath());
+            return syncFile(file, previousState.getProperty(relativeName), compareHashes);
+        });
+        for( int i = 0; i < files.size(); i++ ){
+            StagedFile file = files.get(i);
+            SyncAction action = actions.get(i);
+            switch(action.getKind()){
+                case COPIED:
+                    result.copied.add(file.getTarget());
+                    break;
+                case KEPT:
+                    result.kept.add(file.getTarget());
+                    break;
+                default:
+                    result.broken.add(file.getSource().getAbsolutePath());
+                    continue;
+            }
+            newState.setProperty(relativeName(targetFolderPath, file.getTarget().toPath()), action.getState());
+        }
+
+        // remove everything which was staged before, but isn't required anymore
+        Set<Path> expectedFiles = files.stream().map(file -> file.getTarget().toPath().toAbsolutePath().normalize()).collect(Collectors.toSet());
+        Set<Path> orphanCandidates = new TreeSet<>();
+        previousState.stringPropertyNames().forEach(relativeName -> orphanCandidates.add(targetFolderPath.resolve(relativeName).toAbsolutePath().normalize()));
+        if( previouslyStaged != null ){
+            previouslyStaged.forEach(relativeName -> orphanCandidates.add(targetFolderPath.resolve(relativeName).toAbsolutePath().normalize()));
+        }
+        orphanCandidates.stream().filter(orphan -> !expectedFiles.contains(orphan)).forEach(orphan -> {
+            try{
+                if( Files.deleteIfExists(orphan) ){
+                    getLog().debug(String.format("Deleted orphaned file %s", orphan));
+                    result.deleted.add(orphan.toFile());
+                }
+            } catch(IOException ex){
+                getLog().warn(String.format("Couldn't delete orphaned file %s", orphan));
+                getLog().debug(ex);
+            }
+        });
+
+        try{
+            Files.createDirectories(stateFile.getAbsoluteFile().getParentFile().toPath());
+            try(OutputStream out = Files.newOutputStream(stateFile.toPath())){
+                newState.store(out, "generated by javafx-maven-plugin, do not edit");
+            }
+        } catch(IOException ex){
+            getLog().warn("Couldn't store staging state, next build will copy all files again", ex);
+        }
+        return result;
+    }
+
+    private SyncAction syncFile(StagedFile file, String previousState, boolean compareHashes) {
+        Path source = file.getSource().toPath();
+        Path target = file.getTarget().toPath();
+        try{
+            BasicFileAttributes sourceAttributes = Files.readAttributes(source, BasicFileAttributes.class);
+            String sourceStat = sourceAttributes.size() + ":" + sourceAttributes.lastModifiedTime().toMillis();
+            String sourceHash = null;
+
+            if( Files.isRegularFile(target) && Files.size(target) == sourceAttributes.size() ){
+                boolean unchanged;
+                if( compareHashes ){
+                    sourceHash = InputFingerprint.hash(source);
+                    // without any previous state, we have to look at the target itself
+                    String previousHash = previousState == null ? InputFingerprint.hash(target) : previousState.substring(previousState.lastIndexOf(':') + 1);
+                    unchanged = sourceHash.equals(previousHash);
+                } else if( previousState == null ){
+                    unchanged = Files.getLastModifiedTime(target).toMillis() == sourceAttributes.lastModifiedTime().toMillis();
+                } else {
+                    unchanged = previousState.startsWith(sourceStat + ":");
+                }
+                if( unchanged && fixedTimestamp != null && !MODE_LINK.equals(mode) ){
+                    // the fixed timestamp might have changed since the last run
+                    unchanged = Files.getLastModifiedTime(target).toMillis() == fixedTimestamp;
+                }
+                if( unchanged ){
+                    return new SyncAction(SyncActionKind.KEPT, sourceStat + ":" + (sourceHash == null ? "" : sourceHash));
+                }
+            }
+
+            long start = System.nanoTime();
+            String usedMode = stageFile(source, target);
+            getLog().debug(String.format("Staged %s (%s bytes, %s) in %s ms", source.getFileName(), sourceAttributes.size(), usedMode, (System.nanoTime() - start) / 1000000));
+            return new SyncAction(SyncActionKind.COPIED, sourceStat + ":" + (sourceHash == null ? "" : sourceHash));
+        } catch(IOException ex){
+            getLog().warn(String.format("Couldn't read from file %s", source.toAbsolutePath()));
+            getLog().debug(ex);
+            return new SyncAction(SyncActionKind.BROKEN, null);
+        }
+    }
+
+    private <T> List<T> runInParallel(List<StagedFile> files, Function<StagedFile, T> work) {
+        List<T> results = new ArrayList<>();
+        if( threads == 1 || files.size() <= 1 ){
+            files.forEach(file -> results.add(work.apply(file)));
+            return results;
+        }
+
+        getLog().debug(String.format("Staging %s files using %s threads", files.size(), threads));
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, files.size()));
+        try{
+            List<Future<T>> futures = new ArrayList<>();
+            files.forEach(file -> futures.add(executor.submit(() -> work.apply(file))));
+            // collect in submit-order, this keeps results in the same order as sequential copying would
+            for( Future<T> future : futures ){
+                try{
+                    results.add(future.get());
+                } catch(ExecutionException ex){
+                    throw new IllegalStateException("Error while staging files", ex.getCause());
+                }
+            }
+        } catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while staging files", ex);
+        } finally{
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    private static String relativeName(Path folder, Path file) {
+        return folder.toAbsolutePath().normalize().relativize(file.toAbsolutePath().normalize()).toString().replace('\\', '/');
+    }
+
+    /**
+     * Puts the source-file at the target-location, replacing any existing file there.
+     *
+     * @param source the file to stage
+     * @param target where the file has to be
+     * @return the mode which was used in the end
+     * @throws IOException when the file couldn't be copied
+     */
+    public String stageFile(Path source, Path target) throws IOException {
+        if( Files.exists(target) ){
+            // when the target already is a link to the source, there is nothing to do
+            if( MODE_LINK.equals(mode) && Files.isSameFile(source, target) ){
+                return MODE_LINK;
+            }
+            Files.delete(target);
+        } else {
+            // targets might be inside some subfolder
+            Files.createDirectories(target.toAbsolutePath().getParent());
+        }
+        String usedMode = transfer(source, target);
+        if( fixedTimestamp != null && !MODE_LINK.equals(usedMode) ){
+            Files.setLastModifiedTime(target, FileTime.fromMillis(fixedTimestamp));
+        }
+        return usedMode;
+    }
+
+    private String transfer(Path source, Path target) throws IOException {
+        if( MODE_LINK.equals(mode) ){
+            try{
+                Files.createLink(target, source);
+                return MODE_LINK;
+            } catch(IOException | UnsupportedOperationException | SecurityException ex){
+                // different filesystems or not supported at all
+                getLog().debug(String.format("Couldn't link %s, copying instead (%s)", source, ex.getMessage()));
+            }
+        } else if( MODE_CLONE.equals(mode) && cloneFile(source, target) ){
+            return MODE_CLONE;
+        }
+        Files.copy(source, target, StandardCopyOption.COPY_ATTRIBUTES);
+        return MODE_COPY;
+    }
+
+    private boolean cloneFile(Path source, Path target) {
+        if( IS_WINDOWS ){
+            return false;
+        }
+        // there is no java-API for this, so use "cp" which knows how to clone on btrfs, xfs and apfs
+        List<String> command = new ArrayList<>();
+        command.add("cp");
+        if( IS_MAC ){
+            command.add("-c");
+        } else {
+            command.add("--reflink=always");
+        }
+        command.add("-p");
+        command.add(source.toAbsolutePath().toString());
+        command.add(target.toAbsolutePath().toString());
+        try{
+            Process p = new ProcessBuilder().command(command).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.PIPE).start();
+            // drain output, we don't care about the content
+            while( p.getInputStream().read() != -1 ){
+                // NO-OP
+            }
+            if( p.waitFor() == 0 ){
+                return true;
+            }
+        } catch(IOException ex){
+            getLog().debug(ex);
+        } catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+        }
+        getLog().debug(String.format("Couldn't clone %s, copying instead", source));
+        try{
+            // "cp" might have left some partial file
+            Files.deleteIfExists(target);
+        } catch(IOException ignored){
+            // NO-OP
+        }
+        return false;
+    }
+
+    /**
+     * Replaces all hard-linked files inside the given folder with real copies. This is required when some tool
+     * modifies these files in place, otherwise the linked source (e.g. inside local maven repository) gets modified too.
+     *
+     * @param folder the folder to check recursively
+     * @return amount of replaced files
+     * @throws IOException when some file could not be replaced
+     */
+    public int breakLinks(Path folder) throws IOException {
+        if( !Files.isDirectory(folder) ){
+            return 0;
+        }
+        List<Path> linkedFiles;
+        // try-ressource, because walking on files is lazy, resulting in file-handler left open otherwise
+        try(Stream<Path> walkstream = Files.walk(folder)){
+            linkedFiles = walkstream.filter(Files::isRegularFile).filter(this::isHardLinked).collect(Collectors.toList());
+        }
+        for( Path linkedFile : linkedFiles ){
+            Path privateCopy = linkedFile.resolveSibling(linkedFile.getFileName().toString() + ".unlink");
+            Files.copy(linkedFile, privateCopy, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+            Files.move(privateCopy, linkedFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return linkedFiles.size();
+    }
+
+    private boolean isHardLinked(Path file) {
+        try{
+            Object linkCount = Files.getAttribute(file, "unix:nlink");
+            return linkCount instanceof Integer && (Integer) linkCount > 1;
+        } catch(IOException | UnsupportedOperationException | IllegalArgumentException ex){
+            // no way to find out (e.g. on windows), so just assume it is linked
+            return true;
+        }
+    }
+
+    /**
+     * Deletes the folder including all of its content, nothing happens when not existing.
+     */
+    public static void deleteRecursive(Path folder) throws IOException {
+        if( !Files.exists(folder) ){
+            return;
+        }
+        // try-ressource, because walking on files is lazy, resulting in file-handler left open otherwise
+        try(Stream<Path> walkstream = Files.walk(folder)){
+            for( Path path : (Iterable<Path>) walkstream.sorted(Comparator.reverseOrder())::iterator ){
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * Outcome of synchronizing some folder.
+     */
+    public static class SyncResult {
+
+        private final List<File> copied = new ArrayList<>();
+        private final List<File> kept = new ArrayList<>();
+        private final List<File> deleted = new ArrayList<>();
+        private final List<String> broken = new ArrayList<>();
+
+        public List<File> getCopied() {
+            return copied;
+        }
+
+        public List<File> getKept() {
+            return kept;
+        }
+
+        public List<File> getDeleted() {
+            return deleted;
+        }
+
+        /**
+         * @return absolute paths of all source-files which could not be copied, in the same order as given
+         */
+        public List<String> getBroken() {
+            return broken;
+        }
+
+        public String getSummary() {
+            return String.format("%s copied, %s kept, %s deleted", copied.size(), kept.size(), deleted.size());
+        }
+    }
+
+    private enum SyncActionKind {
+        COPIED, KEPT, BROKEN
+    }
+
+    private static class SyncAction {
+
+        private final SyncActionKind kind;
+        private final String state;
+
+        SyncAction(SyncActionKind kind, String state) {
+            this.kind = kind;
+            this.state = state;
+        }
+
+        SyncActionKind getKind() {
+            return kind;
+        }
+
+        String getState() {
+            return state;
+        }
+    }
+
+    /**
+     * Source and target of a file to stage.
+     */
+    public static class StagedFile {
+
+        private final File source;
+        private final File target;
+
+        public StagedFile(File source, File target) {
+            this.source = source;
+            this.target = target;
+        }
+
+        public File getSource() {
+            return source;
+        }
+
+        public File getTarget() {
+            return target;
+        }
+    }
+}
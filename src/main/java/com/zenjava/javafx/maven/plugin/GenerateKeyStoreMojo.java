@@ -19,6 +19,7 @@ import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.Organization;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.BuildPluginManager;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.project.MavenProject;
@@ -84,6 +85,24 @@ public class GenerateKeyStoreMojo extends AbstractMojo {
      */
     protected Boolean verbose;
 
+    /**
+     * Set this to false for not measuring where the time of this goal goes, see 'target/jfx/build-report.json'.
+     *
+     * @parameter property="jfx.writeBuildReport" default-value=true
+     * @since 8.6.0
+     */
+    protected boolean writeBuildReport;
+
+    /**
+     * The current execution of this Mojo
+     *
+     * @parameter property="mojoExecution"
+     * @readonly
+     */
+    protected MojoExecution mojoExecution;
+
+    private BuildReport buildReport = new BuildReport("build-keystore", null);
+
     /**
      * Set this to true to silently overwrite the keystore. If this is set to false (the default) then if a keystore
      * already exists, this Mojo will fail with an error. This is just to stop you inadvertantly overwritting a keystore
@@ -161,7 +180,17 @@ public class GenerateKeyStoreMojo extends AbstractMojo {
 
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
+        buildReport = AbstractJfxToolsMojo.createBuildReport(mojoExecution, "build-keystore");
+        try{
+            buildKeyStore();
+        } finally{
+            if( writeBuildReport ){
+                AbstractJfxToolsMojo.finishBuildReport(buildReport, new File(project.getBuild().getDirectory(), "jfx"), session, getLog());
+            }
+        }
+    }
 
+    private void buildKeyStore() throws MojoExecutionException, MojoFailureException {
         if( keyStore.exists() ){
             if( overwriteKeyStore ){
                 if( !keyStore.delete() ){
@@ -221,7 +250,7 @@ public class GenerateKeyStoreMojo extends AbstractMojo {
 
         getLog().info("Generating keystore in: " + keyStore);
 
-        try{
+        try(BuildReport.Stage stage = buildReport.startStage("generate keystore")){
             // generated folder if it does not exist
             Files.createDirectories(keyStore.getParentFile().toPath());
 
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Collects all inputs of some build-step (file-contents, coordinates, configuration-values) and compares them
+ * with the inputs stored after the last successful run. When nothing changed, the work can be skipped.
+ * <p>
+ * File-entries are stored together with their size and last-modified time, so unchanged files don't have to be
+ * hashed again on every build.
+ */
+public class InputFingerprint {
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final String MISSING = "<missing>";
+    private static final String FILE_MARKER = "file@";
+
+    private final File storeFile;
+    private final Map<String, String> previousEntries = new TreeMap<>();
+    private final Map<String, String> entries = new TreeMap<>();
+
+    public InputFingerprint(File storeFile) {
+        this.storeFile = storeFile;
+        if( storeFile.isFile() ){
+            Properties stored = new Properties();
+            try(InputStream in = Files.newInputStream(storeFile.toPath())){
+                stored.load(in);
+                stored.stringPropertyNames().forEach(key -> previousEntries.put(key, stored.getProperty(key)));
+            } catch(IOException ignored){
+                // broken store-file, just treat as "everything changed"
+                previousEntries.clear();
+            }
+        }
+    }
+
+    public InputFingerprint add(String key, Object value) {
+        entries.put(key, String.valueOf(value));
+        return this;
+    }
+
+    public InputFingerprint addFile(String key, File file) throws IOException {
+        if( !file.isFile() ){
+            entries.put(key, MISSING);
+            return this;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        String stat = FILE_MARKER + attributes.size() + ":" + attributes.lastModifiedTime().toMillis() + ":";
+
+        // reuse the hash from the last run when size and modification-time are the same
+        String previousValue = previousEntries.get(key);
+        if( previousValue != null && previousValue.startsWith(stat) ){
+            entries.put(key, previousValue);
+        } else {
+            entries.put(key, stat + hash(file.toPath()));
+        }
+        return this;
+    }
+
+    public InputFingerprint addDirectory(String keyPrefix, File directory) throws IOException {
+        if( !directory.isDirectory() ){
+            entries.put(keyPrefix, MISSING);
+            return this;
+        }
+        Path basePath = directory.toPath();
+        List<Path> files;
+        // try-ressource, because walking on files is lazy, resulting in file-handler left open otherwise
+        try(Stream<Path> walkstream = Files.walk(basePath)){
+            files = walkstream.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        for( Path file : files ){
+            // always use "/" as separator, otherwise fingerprints are not portable between systems
+            addFile(keyPrefix + "/" + basePath.relativize(file).toString().replace('\\', '/'), file.toFile());
+        }
+        return this;
+    }
+
+    /**
+     * @param key the key of some entry
+     * @return the value stored after the last run, or null when not existing
+     */
+    public String getPreviousValue(String key) {
+        return previousEntries.get(key);
+    }
+
+    /**
+     * @return true when there was some stored fingerprint and all collected inputs are the same
+     */
+    public boolean isUnchanged() {
+        return !previousEntries.isEmpty() && getChangedKeys().isEmpty();
+    }
+
+    /**
+     * @return all keys which were added, removed or whose content changed since the last stored run
+     */
+    public List<String> getChangedKeys() {
+        List<String> changedKeys = new ArrayList<>();
+        entries.forEach((key, value) -> {
+            String previousValue = previousEntries.get(key);
+            if( previousValue == null || !contentOf(previousValue).equals(contentOf(value)) ){
+                changedKeys.add(key);
+            }
+        });
+        previousEntries.keySet().stream().filter(key -> !entries.containsKey(key)).forEach(changedKeys::add);
+        return changedKeys;
+    }
+
+    public void store() throws IOException {
+        Files.createDirectories(storeFile.getAbsoluteFile().getParentFile().toPath());
+        Properties properties = new Properties();
+        properties.putAll(entries);
+        try(OutputStream out = Files.newOutputStream(storeFile.toPath())){
+            properties.store(out, "generated by javafx-maven-plugin, do not edit");
+        }
+    }
+
+    /**
+     * Removes the stored fingerprint, makes sure the next run does not get skipped.
+     */
+    public void invalidate() {
+        if( storeFile.exists() && !storeFile.delete() ){
+            storeFile.deleteOnExit();
+        }
+    }
+
+    public File getStoreFile() {
+        return storeFile;
+    }
+
+    public static String hash(Path file) throws IOException {
+        MessageDigest digest = createDigest();
+        byte[] buffer = new byte[64 * 1024];
+        try(InputStream in = Files.newInputStream(file)){
+            int read;
+            while( (read = in.read(buffer)) != -1 ){
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    public static String hash(String value) {
+        return toHex(createDigest().digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest createDigest() {
+        try{
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch(NoSuchAlgorithmException ex){
+            // every JRE is required to have SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for( byte b : bytes ){
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static String contentOf(String value) {
+        // file-entries are "file@size:mtime:hash", only the hash counts (a touched but unchanged file is still the same)
+        if( !value.startsWith(FILE_MARKER) ){
+            return value;
+        }
+        return value.substring(value.lastIndexOf(':') + 1);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Creates the package-to-jar index (META-INF/INDEX.LIST) for some jar-file and all jar-files of its Class-Path.
+ * The class-loader of the JRE uses this index for opening only the jar-files containing the requested package,
+ * instead of probing all jar-files one by one.
+ * <p>
+ * The format is the same the "jar"-tool creates when using "jar -i".
+ */
+public class JarIndexBuilder {
+
+    public static final String INDEX_NAME = "META-INF/INDEX.LIST";
+
+    private final int threads;
+
+    public JarIndexBuilder(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * @param entryNames all entries of some jar-file
+     * @return all package-names (using "/"), sorted
+     */
+    public static Set<String> getPackages(Collection<String> entryNames) {
+        Set<String> packages = new TreeSet<>();
+        for( String entryName : entryNames ){
+            // same as the jar-tool: skip the META-INF folder itself, the index and the manifest
+            if( "META-INF/".equals(entryName) || INDEX_NAME.equals(entryName) || JarFile.MANIFEST_NAME.equals(entryName) ){
+                continue;
+            }
+            int packageEnd = entryName.lastIndexOf('/');
+            if( packageEnd < 0 ){
+                // files without any package are listed by their name
+                packages.add(entryName);
+            } else if( packageEnd > 0 ){
+                packages.add(entryName.substring(0, packageEnd));
+            }
+        }
+        return packages;
+    }
+
+    /**
+     * Reads the packages of all given jar-files, using multiple threads.
+     *
+     * @param jarFiles all jar-files by their path relative to the main jar-file (like inside Class-Path)
+     * @return the packages of every jar-file, in the same order
+     * @throws IOException when some jar-file could not be read
+     */
+    public Map<String, Set<String>> scanJars(Map<String, File> jarFiles) throws IOException {
+        Map<String, Set<String>> packagesByJar = new LinkedHashMap<>();
+        if( jarFiles.isEmpty() ){
+            return packagesByJar;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, jarFiles.size()));
+        try{
+            Map<String, Future<Set<String>>> futures = new LinkedHashMap<>();
+            jarFiles.forEach((jarPath, jarFile) -> futures.put(jarPath, executor.submit(() -> readPackages(jarFile))));
+            for( Map.Entry<String, Future<Set<String>>> future : futures.entrySet() ){
+                packagesByJar.put(future.getKey(), future.getValue().get());
+            }
+        } catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while scanning jar-files", ex);
+        } catch(ExecutionException ex){
+            if( ex.getCause() instanceof IOException ){
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException("Error while scanning jar-files", ex.getCause());
+        } finally{
+            executor.shutdownNow();
+        }
+        return packagesByJar;
+    }
+
+    private static Set<String> readPackages(File jarFile) throws IOException {
+        try(ZipFile zipFile = new ZipFile(jarFile)){
+            List<String> entryNames = new ArrayList<>();
+            for( ZipEntry zipEntry : Collections.list(zipFile.entries()) ){
+                entryNames.add(zipEntry.getName());
+            }
+            return getPackages(entryNames);
+        }
+    }
+
+    /**
+     * @param mainJarName the file-name of the main jar-file
+     * @param mainPackages all packages of the main jar-file
+     * @param packagesByJar all packages of every jar-file of the Class-Path
+     * @return the content of META-INF/INDEX.LIST
+     */
+    public static byte[] createIndex(String mainJarName, Set<String> mainPackages, Map<String, Set<String>> packagesByJar) {
+        StringBuilder index = new StringBuilder();
+        index.append("JarIndex-Version: 1.0\n\n");
+        appendSection(index, mainJarName, mainPackages);
+        packagesByJar.forEach((jarPath, packages) -> appendSection(index, jarPath, packages));
+        return index.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendSection(StringBuilder index, String jarPath, Set<String> packages) {
+        if( packages.isEmpty() ){
+            return;
+        }
+        index.append(jarPath).append("\n");
+        packages.forEach(packageName -> index.append(packageName).append("\n"));
+        index.append("\n");
+    }
+}
@@ -23,13 +23,27 @@ import org.apache.maven.model.Dependency;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import org.apache.maven.artifact.Artifact;
 
 /**
@@ -49,6 +63,28 @@ public class JarMojo extends AbstractJfxToolsMojo {
      */
     protected boolean css2bin;
 
+    /**
+     * Set this to true for compiling CSS files to the binary format (see &lt;css2bin&gt;) before creating the jar-file,
+     * instead of letting the JavaFX packager do this while packaging. Stylesheets are compiled in parallel and cached
+     * by the hash of their content inside 'target/jfx/bss-cache', so only changed stylesheets get compiled again.
+     * Stylesheets which could not be compiled are reported and stay in their plain text format. This uses the
+     * streaming jar-writer.
+     *
+     * @parameter default-value=false
+     * @since 8.6.0
+     */
+    protected boolean css2binCache;
+
+    /**
+     * Number of threads used for hashing stylesheets and looking them up inside the cache when using
+     * &lt;css2binCache&gt;. Set this to 0 for using all available processors. The compilation itself always happens
+     * one stylesheet at a time, as the JavaFX packager is not thread-safe.
+     *
+     * @parameter default-value=1
+     * @since 8.6.0
+     */
+    protected int css2binThreads;
+
     /**
      * A custom class that can act as a Pre-Loader for your app. The Pre-Loader is run before anything else and is
      * useful for showing splash screens or similar 'progress' style windows. For more information on Pre-Loaders, see
@@ -66,6 +102,17 @@ public class JarMojo extends AbstractJfxToolsMojo {
      */
     protected boolean updateExistingJar;
 
+    /**
+     * Set this to true for copying all entries of the existing jar (when using &lt;updateExistingJar&gt;) as they are,
+     * without inflating and deflating them again. Only the manifest and the added entries get written, which makes
+     * updating big jar-files a lot faster. The copied entries keep their compression, &lt;jarCompressionLevel&gt; and
+     * &lt;jarCompressionRules&gt; only apply to the other entries. This uses the streaming jar-writer.
+     *
+     * @parameter property="jfx.fastUpdateExistingJar" default-value=false
+     * @since 8.6.0
+     */
+    protected boolean fastUpdateExistingJar;
+
     /**
      * Set this to true if your app needs to break out of the standard web sandbox and do more powerful functions.
      * <p>
@@ -103,6 +150,9 @@ public class JarMojo extends AbstractJfxToolsMojo {
     /**
      * In the case you don't want some dependency landing in the generated lib-folder (e.g. complex maven-dependencies),
      * you now can manually exclude that dependency by added it's coordinates here.
+     * <p>
+     * Both groupId and artifactId may contain "*" as wildcard, e.g. having "*" as artifactId excludes all
+     * dependencies of that group.
      *
      * @parameter
      * @since 8.2.0
@@ -125,6 +175,238 @@ public class JarMojo extends AbstractJfxToolsMojo {
      */
     protected boolean classpathExcludesTransient;
 
+    /**
+     * Set this to true for skipping the creation of the JavaFX JAR (and the copying of all dependencies) when nothing
+     * has changed since the last build. For this, a fingerprint of all inputs gets stored inside
+     * '${project.build.directory}/jfx', containing the content-hashes of your classes and resources (or the existing
+     * jar when using &lt;updateExistingJar&gt;), all dependencies and the configuration of this goal.
+     * <p>
+     * Calling "mvn clean" or removing the generated JavaFX JAR always results in a complete rebuild.
+     *
+     * @parameter default-value=false
+     * @since 8.6.0
+     */
+    protected boolean skipUnchangedJar;
+
+    /**
+     * Amount of threads used for copying all dependencies into the lib-folder. When having a lot of dependencies or
+     * slow disks (e.g. network-backed CI-agents), increasing this can speed up your build.
+     *
+     * @parameter property="jfx.stagingThreads" default-value=1
+     * @since 8.6.0
+     */
+    protected int stagingThreads;
+
+    /**
+     * How dependencies are put into the lib-folder. Possible values are:
+     * <ul>
+     * <li>copy <i>(copies every file, this is the default)</i></li>
+     * <li>link <i>(creates a hard-link to the file inside your local repository, costs nearly no I/O and disk-space)</i></li>
+     * <li>clone <i>(creates a copy-on-write clone, requires filesystem-support like btrfs, xfs or apfs)</i></li>
+     * </ul>
+     * When linking or cloning is not possible, a normal copy is made.
+     * <p>
+     * Please be aware that hard-linked files are the same as inside your local repository, so never modify them in
+     * place! When some bundler does this, set &lt;detachLinkedAppResources&gt; to true.
+     *
+     * @parameter property="jfx.stagingMode" default-value="copy"
+     * @since 8.6.0
+     */
+    protected String stagingMode;
+
+    /**
+     * Files inside the lib-folder are only copied again when their size or modification-time changed since the last
+     * build, dependencies which are not required anymore get removed. Set this to true for comparing content-hashes
+     * instead of modification-times, e.g. when your tools are messing with modification-times.
+     *
+     * @parameter property="jfx.stagingCompareHashes" default-value=false
+     * @since 8.6.0
+     */
+    protected boolean stagingCompareHashes;
+
+    /**
+     * Set this to true for creating the JavaFX JAR without the JavaFX packager. All classes and resources (or the
+     * entries of the existing jar when using &lt;updateExistingJar&gt;) are streamed directly into the resulting jar,
+     * including all JavaFX-specific manifest-entries. This requires less memory and is faster for large applications.
+     *
+     * @parameter default-value=false
+     * @since 8.6.0
+     */
+    protected boolean useStreamingJarWriter;
+
+    /**
+     * Compression level (0-9) used by the streaming jar-writer, -1 means default compression.
+     *
+     * @parameter default-value=-1
+     * @since 8.6.0
+     */
+    protected int jarCompressionLevel;
+
+    /**
+     * Compression rules per file-extension, used by the streaming jar-writer (which gets used automatically when
+     * having any rule). Already compressed files like images, media or nested archives don't get any smaller, so
+     * storing them saves time while building and while loading them. Possible rules are "store", "deflate",
+     * "deflate:N", "N" (compression level 0-9), "auto" and "auto:N" (deflate, but store when it doesn't save at least
+     * 10%). Use "*" as extension for replacing the default rule.
+     * <p>
+     * Example:
+     * <pre>
+     * &lt;jarCompressionRules&gt;
+     *     &lt;png&gt;store&lt;/png&gt;
+     *     &lt;mp3&gt;store&lt;/mp3&gt;
+     *     &lt;xml&gt;deflate:9&lt;/xml&gt;
+     *     &lt;dat&gt;auto&lt;/dat&gt;
+     * &lt;/jarCompressionRules&gt;
+     * </pre>
+     * After creating the jar-file, a report about the bytes and time of each choice gets logged.
+     *
+     * @parameter
+     * @since 8.6.0
+     */
+    protected Map<String, String> jarCompressionRules;
+
+    /**
+     * Number of threads used for compressing the entries of the JavaFX JAR, uses the streaming jar-writer (which gets
+     * used automatically when having more than one thread). The resulting jar-file is the same, regardless of the
+     * number of threads. Set this to 0 for using all available processors, on shared build-agents set this to
+     * some lower value for limiting the threads being used.
+     *
+     * @parameter property="jfx.jarWriterThreads" default-value=1
+     * @since 8.6.0
+     */
+    protected int jarWriterThreads;
+
+    /**
+     * Set this to true for merging all dependencies into the JavaFX JAR, instead of copying them into the lib-folder.
+     * Opening one single jar-file is faster than opening hundreds of them while starting the application. Service-files
+     * (META-INF/services) get merged, signatures of dependencies get removed (they would not be valid anymore) and
+     * duplicate classes get reported, the first one wins. This uses the streaming jar-writer.
+     *
+     * @parameter default-value=false
+     * @since 8.6.0
+     */
+    protected boolean uberJar;
+
+    /**
+     * Set this to true for storing all dependencies unmodified inside the JavaFX JAR (as "lib/*.jar"), instead of
+     * copying them into the lib-folder. This results in one single file, while keeping all dependencies (including
+     * their signatures and licenses) as they are. A small bootstrap class becomes the Main-Class, it reads the nested
+     * jar-files through a memory-mapped view of the JavaFX JAR (nothing gets extracted) and starts the application
+     * (including the preloader). This uses the streaming jar-writer.
+     *
+     * @parameter default-value=false
+     * @since 8.6.0
+     */
+    protected boolean nestedJar;
+
+    /**
+     * Set this to true for adding some package-to-jar index (META-INF/INDEX.LIST) into the JavaFX JAR, covering
+     * itself and all jar-files inside the lib-folder. The class-loader of the JRE then opens only those jar-files
+     * which contain the requested package, instead of searching all of them one by one, which speeds up starting
+     * applications having lots of dependencies. The index gets created by scanning all jar-files in parallel (using
+     * &lt;jarWriterThreads&gt;). Keep this disabled for using the plain classpath-lookup. This uses the streaming
+     * jar-writer and is not required when using &lt;uberJar&gt; or &lt;nestedJar&gt;.
+     *
+     * @parameter property="jfx.jarIndex" default-value=false
+     * @since 8.6.0
+     */
+    protected boolean jarIndex;
+
+    /**
+     * Set this to true for writing the entries of the JavaFX JAR in the order they get loaded while starting the
+     * application (the startup set first), as recorded inside &lt;startupOrderFile&gt;. This gives better read locality
+     * on spinning disks and network filesystems. This uses the streaming jar-writer.
+     *
+     * @parameter property="jfx.startupOrder" default-value=false
+     * @since 8.6.0
+     */
+    protected boolean startupOrder;
+
+    /**
+     * Set this to true for recording the startup order: after creating the JavaFX JAR, the application gets started
+     * inside some separate JVM (using the JVM running this build) and all loaded classes get recorded into
+     * &lt;startupOrderFile&gt;, then the JavaFX JAR gets written again using that order. Commit the recorded file,
+     * so later builds stay reproducible without running the application again.
+     *
+     * @parameter property="jfx.recordStartupOrder" default-value=false
+     * @since 8.6.0
+     */
+    protected boolean recordStartupOrder;
+
+    /**
+     * The file containing the startup order, one entry-name per line.
+     *
+     * @parameter default-value="${project.basedir}/src/main/deploy/startup-order.list"
+     * @since 8.6.0
+     */
+    protected File startupOrderFile;
+
+    /**
+     * When recording the startup order, the application gets stopped as soon as this class got loaded (e.g. the
+     * controller of the first visible scene). Without this, the application runs until it exits by itself or until
+     * &lt;startupOrderTimeout&gt; is reached.
+     *
+     * @parameter property="jfx.startupOrderMarkerClass"
+     * @since 8.6.0
+     */
+    protected String startupOrderMarkerClass;
+
+    /**
+     * Maximum seconds to run the application while recording the startup order.
+     *
+     * @parameter property="jfx.startupOrderTimeout" default-value=30
+     * @since 8.6.0
+     */
+    protected int startupOrderTimeout;
+
+    /**
+     * Additional JVM arguments used while recording the startup order, e.g. for using some headless glass-platform
+     * like Monocle on build-agents without any display.
+     *
+     * @parameter
+     * @since 8.6.0
+     */
+    protected List<String> startupOrderJvmArgs;
+
+    /**
+     * Set this to true for leaving out all classes which are not reachable from your application. Starting with the
+     * main class, the preloader and the main classes of all secondary launchers, all referenced classes are followed,
+     * including controllers and imports of FXML-files and providers of used services (META-INF/services). Unreachable
+     * classes of your project are not written into the JavaFX JAR (using &lt;uberJar&gt; this applies to the classes
+     * of all dependencies too), dependencies without any reachable class are not copied into the lib-folder. This
+     * replaces shrinking by hand using ProGuard for most applications, classes only used via reflection have to be
+     * listed inside &lt;shrinkKeep&gt;. This uses the streaming jar-writer.
+     * <p>
+     * The analysis of every dependency is cached inside "target/jfx/class-cache" by the hash of its jar-file.
+     *
+     * @parameter property="jfx.shrink" default-value=false
+     * @since 8.6.0
+     */
+    protected boolean shrink;
+
+    /**
+     * Classes to keep when using &lt;shrink&gt;, regardless of being reachable or not (e.g. because they are only
+     * loaded via reflection). These are class-names, where "*" matches anything:
+     * <pre>
+     *     &lt;shrinkKeep&gt;
+     *         &lt;keep&gt;com.foo.plugins.*&lt;/keep&gt;
+     *     &lt;/shrinkKeep&gt;
+     * </pre>
+     *
+     * @parameter
+     * @since 8.6.0
+     */
+    protected List<String> shrinkKeep;
+
+    /**
+     * The same secondary launchers as configured for creating native bundles, their main classes are taken into
+     * account when using &lt;shrink&gt;.
+     *
+     * @parameter
+     * @since 8.6.0
+     */
+    protected List<NativeLauncher> secondaryLaunchers;
+
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
         if( jfxCallFromCLI ){
@@ -132,6 +414,15 @@ public class JarMojo extends AbstractJfxToolsMojo {
             return;
         }
 
+        startBuildReport("build-jar");
+        try{
+            buildJar();
+        } finally{
+            finishBuildReport();
+        }
+    }
+
+    private void buildJar() throws MojoExecutionException, MojoFailureException {
         getLog().info("Building JavaFX JAR for application");
 
         Build build = project.getBuild();
@@ -167,6 +458,11 @@ public class JarMojo extends AbstractJfxToolsMojo {
             createJarParams.addResource(new File(build.getOutputDirectory()), "");
         }
 
+        InputFingerprint jarFingerprint = null;
+        List<File> packagerJarFiles = new ArrayList<>();
+        List<FileStager.StagedFile> filesToStage = new ArrayList<>();
+        List<File> mergedDependencies = new ArrayList<>();
+        List<String> unreachableEntries = new ArrayList<>();
         try{
             if( checkIfJavaIsHavingPackagerJar() ){
                 getLog().debug("Check if packager.jar needs to be added");
@@ -180,10 +476,8 @@ public class JarMojo extends AbstractJfxToolsMojo {
                             String packagerJarFilePathString = packagerJarFile.toPath().normalize().toString();
                             if( packagerJarFile.exists() && packagerJarFilePathString.endsWith(targetPackagerJarPath) ){
                                 getLog().debug(String.format("Including packager.jar from system-scope: %s", packagerJarFilePathString));
-                                File dest = new File(libDir, packagerJarFile.getName());
-                                if( !dest.exists() ){
-                                    Files.copy(packagerJarFile.toPath(), dest.toPath());
-                                }
+                                packagerJarFiles.add(packagerJarFile);
+                                filesToStage.add(new FileStager.StagedFile(packagerJarFile, new File(libDir, packagerJarFile.getName())));
                                 classpath.append("lib/").append(packagerJarFile.getName()).append(" ");
                             }
                         }
@@ -194,32 +488,71 @@ public class JarMojo extends AbstractJfxToolsMojo {
             } else if( addPackagerJar ){
                 getLog().warn("Skipped checking for packager.jar. Please install at least Java 1.8u40 for using this feature.");
             }
-            List<String> brokenArtifacts = new ArrayList<>();
-            project.getArtifacts().stream().filter(artifact -> {
+            ClasspathExclusionIndex exclusionIndex = new ClasspathExclusionIndex(classpathExcludes);
+            List<Artifact> artifactsToCopy = project.getArtifacts().stream().filter(artifact -> {
                 // filter all unreadable, non-file artifacts
                 File artifactFile = artifact.getFile();
                 return artifactFile.isFile() && artifactFile.canRead();
             }).filter(artifact -> {
-                if( classpathExcludes.isEmpty() ){
+                if( exclusionIndex.isEmpty() ){
                     return true;
                 }
-                boolean isListedInList = isListedInExclusionList(artifact);
-                return !isListedInList;
-            }).forEach(artifact -> {
+                String exclusion = exclusionIndex.findExclusion(artifact, classpathExcludesTransient);
+                if( exclusion != null ){
+                    getLog().debug(String.format("Excluding %s from classpath, matched by exclusion %s", artifact.getId(), exclusion));
+                }
+                return exclusion == null;
+            }).collect(Collectors.toCollection(ArrayList::new));
+
+            if( skipUnchangedJar ){
+                jarFingerprint = createJarFingerprint(artifactsToCopy, packagerJarFiles);
+                File generatedJar = new File(jfxAppOutputDir, jfxMainAppJarName);
+                // when lib-files got removed by hand, we have to copy them again
+                boolean allLibFilesExisting = uberJar || nestedJar || shrink || artifactsToCopy.stream().allMatch(artifact -> new File(libDir, artifact.getFile().getName()).isFile());
+                if( generatedJar.isFile() && allLibFilesExisting && jarFingerprint.isUnchanged() ){
+                    getLog().info("Skipping creation of JavaFX JAR, no changes since last build (compared with fingerprint " + jarFingerprint.getStoreFile() + ")");
+                    return;
+                }
+                List<String> changedInputs = jarFingerprint.getChangedKeys();
+                if( !generatedJar.isFile() ){
+                    getLog().info("Creating JavaFX JAR, because it does not exist yet");
+                } else if( !allLibFilesExisting ){
+                    getLog().info("Creating JavaFX JAR, because some files inside lib-folder are missing");
+                } else if( !changedInputs.isEmpty() ){
+                    getLog().info(String.format("Creating JavaFX JAR, because %s input(s) changed since last build, first one: %s", changedInputs.size(), changedInputs.get(0)));
+                }
+                changedInputs.forEach(changedInput -> getLog().debug("Changed input: " + changedInput));
+                // when building fails in between, we must not skip next time
+                jarFingerprint.invalidate();
+            }
+
+            if( shrink ){
+                try(BuildReport.Stage stage = getBuildReport().startStage("remove unreachable classes")){
+                    unreachableEntries.addAll(removeUnreachableClasses(artifactsToCopy));
+                }
+            }
+            artifactsToCopy.forEach(artifact -> {
                 File artifactFile = artifact.getFile();
                 getLog().debug(String.format("Including classpath element: %s", artifactFile.getAbsolutePath()));
-                File dest = new File(libDir, artifactFile.getName());
-                if( !dest.exists() ){
-                    try{
-                        Files.copy(artifactFile.toPath(), dest.toPath());
-                    } catch(IOException ex){
-                        getLog().warn(String.format("Couldn't read from file %s", artifactFile.getAbsolutePath()));
-                        getLog().debug(ex);
-                        brokenArtifacts.add(artifactFile.getAbsolutePath());
-                    }
-                }
+                filesToStage.add(new FileStager.StagedFile(artifactFile, new File(libDir, artifactFile.getName())));
                 classpath.append("lib/").append(artifactFile.getName()).append(" ");
             });
+            if( uberJar || nestedJar ){
+                // nothing goes into the lib-folder (this removes files from previous builds), everything goes into the jar
+                filesToStage.forEach(stagedFile -> mergedDependencies.add(stagedFile.getSource()));
+                filesToStage.clear();
+                classpath.setLength(0);
+            }
+            FileStager fileStager = new FileStager(stagingThreads, stagingMode, getLog());
+            fileStager.setFixedTimestamp(getReproducibleTimestamp());
+            FileStager.SyncResult syncResult;
+            try(BuildReport.Stage stage = getBuildReport().startStage("copy dependencies")){
+                // files inside the lib-folder not coming from us (like additional app resources) must be kept
+                syncResult = fileStager.sync(filesToStage, libDir, new File(getJfxBuildDirectory(), "lib.staging"), stagingCompareHashes, getPreviousLibFolderEntries(libDir));
+                syncResult.getCopied().forEach(stage::addOutput);
+            }
+            getLog().info("Synchronized lib-folder: " + syncResult.getSummary());
+            List<String> brokenArtifacts = syncResult.getBroken();
             if( !brokenArtifacts.isEmpty() ){
                 throw new MojoExecutionException("Error copying dependencies for application");
             }
@@ -233,10 +566,21 @@ public class JarMojo extends AbstractJfxToolsMojo {
             manifestAttributes.put("Permissions", "all-permissions");
         }
 
-        try{
-            getPackagerLib().packageAsJar(createJarParams);
-        } catch(PackagerException e){
-            throw new MojoExecutionException("Unable to build JFX JAR for application", e);
+        if( isStreamingJarWriterUsable() ){
+            writeJarUsingStreamingWriter(classpath.toString().trim(), filesToStage, mergedDependencies, unreachableEntries);
+            if( recordStartupOrder ){
+                try(BuildReport.Stage stage = getBuildReport().startStage("record startup order")){
+                    recordStartupOrder(classpath.toString().trim());
+                }
+                writeJarUsingStreamingWriter(classpath.toString().trim(), filesToStage, mergedDependencies, unreachableEntries);
+            }
+        } else {
+            try(BuildReport.Stage stage = getBuildReport().startStage("write jar (JavaFX packager)")){
+                getPackagerLib().packageAsJar(createJarParams);
+                stage.addOutput(new File(jfxAppOutputDir, jfxMainAppJarName));
+            } catch(PackagerException e){
+                throw new MojoExecutionException("Unable to build JFX JAR for application", e);
+            }
         }
 
         // cleanup
@@ -244,30 +588,394 @@ public class JarMojo extends AbstractJfxToolsMojo {
             // remove lib-folder, when nothing ended up there
             libDir.delete();
         }
+
+        if( jarFingerprint != null ){
+            try{
+                jarFingerprint.store();
+            } catch(IOException ex){
+                getLog().warn("Couldn't store fingerprint of JavaFX JAR, next build won't be able to skip unchanged JAR", ex);
+            }
+        }
     }
 
-    private boolean checkIfJavaIsHavingPackagerJar() {
-        if( JavaDetectionTools.IS_JAVA_8 && JavaDetectionTools.isAtLeastOracleJavaUpdateVersion(40) ){
-            return true;
+    /**
+     * The lib-folder might have been filled by some build which didn't record its staging state yet. To still
+     * remove outdated dependencies then, the entries of the Class-Path of the existing JavaFX JAR are taken.
+     */
+    private Set<String> getPreviousLibFolderEntries(File libDir) {
+        File previousJar = new File(jfxAppOutputDir, jfxMainAppJarName);
+        if( !previousJar.isFile() ){
+            return Collections.emptySet();
         }
-        if( JavaDetectionTools.IS_JAVA_9 ){ // NOSONAR
+        Path libDirPath = libDir.toPath().toAbsolutePath().normalize();
+        try{
+            return ClassDataSharingArchiver.getClassPath(previousJar).stream()
+                    .map(classPathEntry -> classPathEntry.toPath().toAbsolutePath().normalize())
+                    .filter(classPathEntry -> libDirPath.equals(classPathEntry.getParent()))
+                    .map(classPathEntry -> classPathEntry.getFileName().toString())
+                    .collect(Collectors.toSet());
+        } catch(IOException ex){
+            getLog().debug("Couldn't read Class-Path of previous JavaFX JAR", ex);
+            return Collections.emptySet();
+        }
+    }
+
+    private boolean isStreamingJarWriterUsable() throws MojoExecutionException {
+        boolean reproducibleJar = getReproducibleTimestamp() != null;
+        boolean hasCompressionRules = jarCompressionRules != null && !jarCompressionRules.isEmpty();
+        if( uberJar && nestedJar ){
+            throw new MojoExecutionException("Please use either <uberJar> or <nestedJar>, not both!");
+        }
+        if( uberJar || nestedJar ){
+            if( css2bin && !css2binCache ){
+                throw new MojoExecutionException("Creating a single-file jar while compiling CSS files to binary format requires <css2binCache>true</css2binCache>!");
+            }
+            if( jarIndex ){
+                getLog().info("Skipping package-to-jar index, all classes are inside the JavaFX JAR");
+            }
             return true;
         }
-        return false;
+        boolean orderedJar = startupOrder || recordStartupOrder;
+        boolean fastUpdate = updateExistingJar && fastUpdateExistingJar;
+        if( !useStreamingJarWriter && !fastUpdate && !reproducibleJar && !hasCompressionRules && jarWriterThreads == 1 && !jarIndex && !orderedJar && !shrink && !(css2bin && css2binCache) ){
+            return false;
+        }
+        if( css2bin && !css2binCache ){
+            List<String> ignoredSettings = new ArrayList<>();
+            if( reproducibleJar ){
+                ignoredSettings.add("reproducible output");
+            }
+            if( hasCompressionRules || jarWriterThreads != 1 ){
+                ignoredSettings.add("compression rules and threads");
+            }
+            if( jarIndex ){
+                ignoredSettings.add("package-to-jar index");
+            }
+            if( orderedJar ){
+                ignoredSettings.add("startup order");
+            }
+            if( shrink ){
+                ignoredSettings.add("removing unreachable classes");
+            }
+            if( fastUpdate ){
+                ignoredSettings.add("copying entries of the existing jar");
+            }
+            if( ignoredSettings.isEmpty() ){
+                getLog().warn("Compiling CSS files to binary format is not supported by the streaming jar-writer, using JavaFX packager instead.");
+            } else {
+                getLog().warn("Compiling CSS files to binary format is not supported by the streaming jar-writer, using JavaFX packager and ignoring: " + String.join(", ", ignoredSettings));
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private void writeJarUsingStreamingWriter(String classpath, List<FileStager.StagedFile> stagedFiles, List<File> mergedDependencies, List<String> unreachableEntries) throws MojoExecutionException {
+        Build build = project.getBuild();
+        StreamingJarWriter jarWriter = new StreamingJarWriter(getLog());
+        try{
+            jarWriter.setCompressionLevel(jarCompressionLevel);
+        } catch(IllegalArgumentException ex){
+            throw new MojoExecutionException("Please provide a proper value for <jarCompressionLevel>!", ex);
+        }
+        if( jarCompressionRules != null && !jarCompressionRules.isEmpty() ){
+            CompressionPolicy compressionPolicy = new CompressionPolicy(jarCompressionLevel);
+            for( Map.Entry<String, String> compressionRule : jarCompressionRules.entrySet() ){
+                try{
+                    compressionPolicy.addRule(compressionRule.getKey(), compressionRule.getValue());
+                } catch(IllegalArgumentException ex){
+                    throw new MojoExecutionException("Please provide a proper value for <jarCompressionRules>!", ex);
+                }
+            }
+            jarWriter.setCompressionPolicy(compressionPolicy);
+        }
+        jarWriter.setThreads(jarWriterThreads > 0 ? jarWriterThreads : Runtime.getRuntime().availableProcessors());
+        Long reproducibleTimestamp = getReproducibleTimestamp();
+        if( reproducibleTimestamp != null ){
+            jarWriter.setReproducible(reproducibleTimestamp);
+        }
+        if( updateExistingJar ){
+            jarWriter.setCopyCompressedEntries(fastUpdateExistingJar);
+            jarWriter.addJar(new File(build.getDirectory() + File.separator + build.getFinalName() + ".jar"));
+        } else {
+            jarWriter.addDirectory(new File(build.getOutputDirectory()));
+        }
+        if( css2bin ){
+            try(BuildReport.Stage stage = getBuildReport().startStage("compile stylesheets")){
+                compileStylesheets(jarWriter);
+            }
+        }
+        List<String> nestedClassPath = new ArrayList<>();
+        if( nestedJar ){
+            for( File dependency : mergedDependencies ){
+                String nestedName = "lib/" + dependency.getName();
+                jarWriter.addStoredFile(nestedName, dependency);
+                nestedClassPath.add(nestedName);
+            }
+            addNestedJarLauncher(jarWriter);
+        } else {
+            mergedDependencies.forEach(jarWriter::addDependencyJar);
+        }
+        unreachableEntries.forEach(jarWriter::excludeEntry);
+        if( (startupOrder || recordStartupOrder) && startupOrderFile.isFile() ){
+            try{
+                StartupOrderProfile startupOrderProfile = StartupOrderProfile.read(startupOrderFile);
+                getLog().info(String.format("Writing %s entries in startup order, as recorded inside %s", startupOrderProfile.getEntryNames().size(), startupOrderFile));
+                jarWriter.setEntryOrder(startupOrderProfile.getEntryNames());
+            } catch(IOException ex){
+                throw new MojoExecutionException("Unable to read startup order " + startupOrderFile, ex);
+            }
+        } else if( startupOrder && !recordStartupOrder ){
+            getLog().warn("Startup order is not recorded yet, please run with <recordStartupOrder>true</recordStartupOrder> once. Missing file: " + startupOrderFile);
+        }
+        if( jarIndex && !uberJar && !nestedJar ){
+            // same paths as inside the Class-Path, the staged files are copies (or links) of their sources
+            Map<String, File> indexedClassPath = new LinkedHashMap<>();
+            stagedFiles.forEach(stagedFile -> indexedClassPath.put("lib/" + stagedFile.getSource().getName(), stagedFile.getSource()));
+            jarWriter.setJarIndex(jfxMainAppJarName, indexedClassPath);
+        }
+
+        // same entries as the JavaFX packager would create
+        Map<String, String> jarManifestAttributes = new LinkedHashMap<>();
+        jarManifestAttributes.put("Created-By", "JavaFX Maven Plugin");
+        if( nestedJar ){
+            // the java-launcher would try to load the JavaFX application by itself when having "JavaFX-Application-Class"
+            jarManifestAttributes.put("Main-Class", NestedJarLauncher.class.getName());
+            jarManifestAttributes.put(NestedJarLauncher.NESTED_MAIN_CLASS, mainClass);
+            if( preLoader != null ){
+                jarManifestAttributes.put(NestedJarLauncher.NESTED_PRELOADER_CLASS, preLoader);
+            }
+            if( !nestedClassPath.isEmpty() ){
+                jarManifestAttributes.put(NestedJarLauncher.NESTED_CLASS_PATH, String.join(" ", nestedClassPath));
+            }
+        } else {
+            jarManifestAttributes.put("Main-Class", mainClass);
+            jarManifestAttributes.put("JavaFX-Application-Class", mainClass);
+            if( preLoader != null ){
+                jarManifestAttributes.put("JavaFX-Preloader-Class", preLoader);
+            }
+        }
+        if( !classpath.isEmpty() ){
+            jarManifestAttributes.put("Class-Path", classpath);
+        }
+        jarManifestAttributes.putAll(manifestAttributes);
+
+        try(BuildReport.Stage stage = getBuildReport().startStage("write jar")){
+            File targetJar = new File(jfxAppOutputDir, jfxMainAppJarName);
+            jarWriter.write(targetJar, jarManifestAttributes);
+            stage.addOutput(targetJar);
+        } catch(IOException e){
+            throw new MojoExecutionException("Unable to build JFX JAR for application", e);
+        }
+    }
+
+    /**
+     * Removes all dependencies without any reachable class from the given list.
+     *
+     * @return the entry-names of all unreachable classes to leave out of the JavaFX JAR
+     */
+    private List<String> removeUnreachableClasses(List<Artifact> artifactsToCopy) throws IOException {
+        Build build = project.getBuild();
+        File applicationSource = updateExistingJar ? new File(build.getDirectory() + File.separator + build.getFinalName() + ".jar") : new File(build.getOutputDirectory());
+        List<File> dependencyJars = artifactsToCopy.stream().map(Artifact::getFile).collect(Collectors.toList());
+        List<String> rootClasses = new ArrayList<>();
+        rootClasses.add(mainClass);
+        rootClasses.add(preLoader);
+        Optional.ofNullable(secondaryLaunchers).ifPresent(launchers -> launchers.forEach(launcher -> rootClasses.add(launcher.getMainClass())));
+
+        ReachabilityAnalyzer analyzer = new ReachabilityAnalyzer(Runtime.getRuntime().availableProcessors(), new File(getJfxBuildDirectory(), "class-cache"), getLog());
+        ReachabilityAnalyzer.Result result = analyzer.analyze(applicationSource, dependencyJars, rootClasses, shrinkKeep);
+        getLog().info("Analyzed reachable classes: " + result.getSummary());
+
+        Set<File> unusedJars = new HashSet<>(result.getUnusedJars());
+        artifactsToCopy.removeIf(artifact -> {
+            if( unusedJars.contains(artifact.getFile()) ){
+                getLog().info(String.format("Leaving out %s, none of its classes is reachable", artifact.getId()));
+                return true;
+            }
+            return false;
+        });
+        List<String> unreachableEntries = new ArrayList<>(result.getUnreachableEntries(applicationSource));
+        if( uberJar ){
+            artifactsToCopy.forEach(artifact -> unreachableEntries.addAll(result.getUnreachableEntries(artifact.getFile())));
+        }
+        unreachableEntries.forEach(unreachableEntry -> getLog().debug("Leaving out unreachable class " + unreachableEntry));
+        return unreachableEntries;
     }
 
-    private boolean isListedInExclusionList(Artifact artifact) {
-        return classpathExcludes.stream().filter(dependency -> {
-            // we are checking for "groupID:artifactId:" because we don't care about versions nor types (jar, war, source, ...)
-            String dependencyTrailIdentifier = dependency.getGroupId() + ":" + dependency.getArtifactId() + ":";
+    private void recordStartupOrder(String classpath) throws MojoExecutionException {
+        File mainJar = new File(jfxAppOutputDir, jfxMainAppJarName);
+        List<File> profilingClassPath = new ArrayList<>();
+        profilingClassPath.add(mainJar);
+        if( !classpath.isEmpty() ){
+            Arrays.stream(classpath.split("\\s+")).map(classPathEntry -> new File(jfxAppOutputDir, classPathEntry)).forEach(profilingClassPath::add);
+        }
+        String profiledMainClass = nestedJar ? NestedJarLauncher.class.getName() : mainClass;
+        List<String> profilingJvmArgs = startupOrderJvmArgs == null ? new ArrayList<>() : startupOrderJvmArgs;
 
-            // when not transitive, look at the artifact information
-            if( !classpathExcludesTransient ){
-                return dependencyTrailIdentifier.startsWith(artifact.getGroupId() + ":" + artifact.getArtifactId() + ":");
+        getLog().info("Recording startup order of application");
+        try{
+            ApplicationProfiler.ProfilingResult profilingResult = new ApplicationProfiler(getLog()).profile(profilingClassPath, profiledMainClass, profilingJvmArgs, startupOrderMarkerClass, startupOrderTimeout);
+            if( startupOrderMarkerClass != null && !profilingResult.isMarkerReached() ){
+                getLog().warn(String.format("Marker class %s was not loaded while recording startup order, using all classes loaded within %s ms", startupOrderMarkerClass, profilingResult.getDurationMillis()));
             }
+            StartupOrderProfile startupOrderProfile = StartupOrderProfile.fromLoadedClasses(profilingResult.getLoadedClasses(), mainJar);
+            if( startupOrderProfile.getEntryNames().isEmpty() ){
+                getLog().warn("No classes of the JavaFX JAR were loaded while recording startup order, keeping " + startupOrderFile);
+                return;
+            }
+            startupOrderProfile.write(startupOrderFile);
+            getLog().info(String.format("Recorded startup order of %s classes into %s", startupOrderProfile.getEntryNames().size(), startupOrderFile));
+        } catch(IOException ex){
+            throw new MojoExecutionException("Unable to record startup order of application", ex);
+        }
+    }
+
+    private void addNestedJarLauncher(StreamingJarWriter jarWriter) throws MojoExecutionException {
+        // the launcher (including all its inner classes) is part of this plugin
+        List<Class<?>> launcherClasses = new ArrayList<>();
+        launcherClasses.add(NestedJarLauncher.class);
+        for( int i = 0; i < launcherClasses.size(); i++ ){
+            launcherClasses.addAll(Arrays.asList(launcherClasses.get(i).getDeclaredClasses()));
+        }
+        for( Class<?> launcherClass : launcherClasses ){
+            String classFileName = launcherClass.getName().replace('.', '/') + ".class";
+            try(InputStream in = NestedJarLauncher.class.getClassLoader().getResourceAsStream(classFileName)){
+                if( in == null ){
+                    throw new MojoExecutionException("Unable to find class-file of nested jar launcher: " + classFileName);
+                }
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
+                while( (read = in.read(buffer)) != -1 ){
+                    content.write(buffer, 0, read);
+                }
+                jarWriter.addContent(classFileName, content.toByteArray());
+            } catch(IOException ex){
+                throw new MojoExecutionException("Unable to read class-file of nested jar launcher: " + classFileName, ex);
+            }
+        }
+    }
+
+    private void compileStylesheets(StreamingJarWriter jarWriter) throws MojoExecutionException {
+        Build build = project.getBuild();
+        Map<String, File> stylesheets;
+        try{
+            if( updateExistingJar ){
+                // the packager needs real files
+                File extractedStylesheetsDirectory = new File(getJfxBuildDirectory(), "css");
+                stylesheets = extractStylesheets(new File(build.getDirectory() + File.separator + build.getFinalName() + ".jar"), extractedStylesheetsDirectory);
+            } else {
+                stylesheets = StylesheetCompiler.findStylesheets(new File(build.getOutputDirectory()));
+            }
+        } catch(IOException ex){
+            throw new MojoExecutionException("Unable to find stylesheets for compiling", ex);
+        }
+        if( stylesheets.isEmpty() ){
+            return;
+        }
 
-            // when transitive, look at the trail
-            return artifact.getDependencyTrail().stream().anyMatch((dependencyTrail) -> (dependencyTrail.startsWith(dependencyTrailIdentifier)));
-        }).count() > 0;
+        // makes sure the packager got initialized (logger and deploy-dir), the compiler creates its own instances one at a time
+        getPackagerLib();
+        int threads = css2binThreads > 0 ? css2binThreads : Runtime.getRuntime().availableProcessors();
+        StylesheetCompiler.CompileResult compileResult = new StylesheetCompiler(threads, new File(getJfxBuildDirectory(), "bss-cache"), getLog()).compile(stylesheets);
+        getLog().info("Compiled stylesheets: " + compileResult.getSummary());
+        compileResult.getFailed().forEach((stylesheet, reason) -> {
+            getLog().warn(String.format("Couldn't compile stylesheet %s, keeping it as plain text: %s", stylesheet, reason));
+        });
+
+        // like the JavaFX packager: binary stylesheets replace their plain text version
+        compileResult.getCompiled().forEach(jarWriter::addFile);
+        stylesheets.keySet().stream().filter(stylesheet -> !compileResult.getFailed().containsKey(stylesheet)).forEach(jarWriter::excludeEntry);
+    }
+
+    private Map<String, File> extractStylesheets(File jarFile, File targetDirectory) throws IOException {
+        Map<String, File> stylesheets = new TreeMap<>();
+        try(ZipFile zipFile = new ZipFile(jarFile)){
+            for( ZipEntry zipEntry : Collections.list(zipFile.entries()) ){
+                if( zipEntry.isDirectory() || !zipEntry.getName().toLowerCase().endsWith(".css") ){
+                    continue;
+                }
+                File targetFile = new File(targetDirectory, zipEntry.getName());
+                if( !targetFile.toPath().normalize().startsWith(targetDirectory.toPath().normalize()) ){
+                    // don't write outside of the target-folder
+                    continue;
+                }
+                Files.createDirectories(targetFile.getParentFile().toPath());
+                try(InputStream in = zipFile.getInputStream(zipEntry)){
+                    Files.copy(in, targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                stylesheets.put(zipEntry.getName(), targetFile);
+            }
+        }
+        return stylesheets;
+    }
+
+    private InputFingerprint createJarFingerprint(List<Artifact> artifactsToCopy, List<File> packagerJarFiles) throws IOException {
+        Build build = project.getBuild();
+        InputFingerprint fingerprint = new InputFingerprint(new File(getJfxBuildDirectory(), "jar.fingerprint"));
+
+        // configuration of this mojo
+        fingerprint.add("config:mainClass", mainClass);
+        fingerprint.add("config:jfxAppOutputDir", jfxAppOutputDir.getAbsolutePath());
+        fingerprint.add("config:jfxMainAppJarName", jfxMainAppJarName);
+        fingerprint.add("config:css2bin", css2bin);
+        fingerprint.add("config:css2binCache", css2binCache);
+        fingerprint.add("config:uberJar", uberJar);
+        fingerprint.add("config:nestedJar", nestedJar);
+        fingerprint.add("config:jarIndex", jarIndex);
+        fingerprint.add("config:shrink", shrink);
+        fingerprint.add("config:shrinkKeep", shrinkKeep);
+        fingerprint.add("config:secondaryLaunchers", secondaryLaunchers == null ? null : secondaryLaunchers.stream().map(NativeLauncher::getMainClass).collect(Collectors.toList()));
+        fingerprint.add("config:startupOrder", startupOrder);
+        fingerprint.add("config:recordStartupOrder", recordStartupOrder);
+        fingerprint.add("config:startupOrderMarkerClass", startupOrderMarkerClass);
+        fingerprint.add("config:startupOrderTimeout", startupOrderTimeout);
+        fingerprint.add("config:startupOrderJvmArgs", startupOrderJvmArgs);
+        // when recording, this file gets rewritten by every build, so it isn't an input
+        if( startupOrder && !recordStartupOrder ){
+            fingerprint.addFile("input:startupOrderFile", startupOrderFile);
+        }
+        fingerprint.add("config:preLoader", preLoader);
+        fingerprint.add("config:useStreamingJarWriter", useStreamingJarWriter);
+        fingerprint.add("config:jarCompressionLevel", jarCompressionLevel);
+        fingerprint.add("config:jarCompressionRules", jarCompressionRules == null ? null : new TreeMap<>(jarCompressionRules));
+        fingerprint.add("config:reproducible", reproducible);
+        fingerprint.add("config:outputTimestamp", outputTimestamp);
+        fingerprint.add("config:updateExistingJar", updateExistingJar);
+        fingerprint.add("config:fastUpdateExistingJar", fastUpdateExistingJar);
+        fingerprint.add("config:allPermissions", allPermissions);
+        fingerprint.add("config:addPackagerJar", addPackagerJar);
+        fingerprint.add("config:stagingMode", stagingMode);
+        fingerprint.add("config:classpathExcludesTransient", classpathExcludesTransient);
+        fingerprint.add("config:classpathExcludes", classpathExcludes.stream().map(dependency -> dependency.getGroupId() + ":" + dependency.getArtifactId()).sorted().collect(Collectors.toList()));
+        fingerprint.add("config:manifestAttributes", new TreeMap<>(manifestAttributes));
+
+        // classes and resources
+        if( updateExistingJar ){
+            fingerprint.addFile("input:existingJar", new File(build.getDirectory() + File.separator + build.getFinalName() + ".jar"));
+        } else {
+            fingerprint.addDirectory("input:outputDirectory", new File(build.getOutputDirectory()));
+        }
+
+        // dependencies, the order is important too, because it ends up inside the classpath
+        fingerprint.add("classpath", artifactsToCopy.stream().map(artifact -> artifact.getFile().getName()).collect(Collectors.toList()));
+        for( Artifact artifact : artifactsToCopy ){
+            fingerprint.addFile("artifact:" + artifact.getId(), artifact.getFile());
+        }
+        for( File packagerJarFile : packagerJarFiles ){
+            fingerprint.addFile("packager:" + packagerJarFile.getName(), packagerJarFile);
+        }
+        return fingerprint;
+    }
+
+    private boolean checkIfJavaIsHavingPackagerJar() {
+        if( JavaDetectionTools.IS_JAVA_8 && JavaDetectionTools.isAtLeastOracleJavaUpdateVersion(40) ){
+            return true;
+        }
+        if( JavaDetectionTools.IS_JAVA_9 ){ // NOSONAR
+            return true;
+        }
+        return false;
     }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Writes reports as JSON, without requiring any JSON-library. Supported values are maps (keys are converted to
+ * strings, written in their iteration order), collections, strings, numbers, booleans and null, everything else is
+ * written as string.
+ */
+public class JsonWriter {
+
+    private static final String INDENT = "  ";
+
+    private JsonWriter() {
+        // utility class
+    }
+
+    /**
+     * @param value the value to convert
+     * @return the value as pretty-printed JSON
+     */
+    public static String toJson(Object value) {
+        StringBuilder json = new StringBuilder();
+        append(json, value, 0);
+        return json.toString();
+    }
+
+    /**
+     * @param value the value to write
+     * @param file the file to write to, parent folders get created
+     * @throws IOException when the file could not be written
+     */
+    public static void write(Object value, File file) throws IOException {
+        Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+        Files.write(file.toPath(), (toJson(value) + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void append(StringBuilder json, Object value, int depth) {
+        if( value == null ){
+            json.append("null");
+        } else if( value instanceof Map ){
+            Map<?, ?> map = (Map<?, ?>) value;
+            if( map.isEmpty() ){
+                json.append("{}");
+                return;
+            }
+            json.append("{\n");
+            Iterator<? extends Map.Entry<?, ?>> entries = map.entrySet().iterator();
+            while( entries.hasNext() ){
+                Map.Entry<?, ?> entry = entries.next();
+                indent(json, depth + 1);
+                appendString(json, String.valueOf(entry.getKey()));
+                json.append(": ");
+                append(json, entry.getValue(), depth + 1);
+                json.append(entries.hasNext() ? ",\n" : "\n");
+            }
+            indent(json, depth);
+            json.append('}');
+        } else if( value instanceof Collection ){
+            Collection<?> collection = (Collection<?>) value;
+            if( collection.isEmpty() ){
+                json.append("[]");
+                return;
+            }
+            json.append("[\n");
+            Iterator<?> elements = collection.iterator();
+            while( elements.hasNext() ){
+                indent(json, depth + 1);
+                append(json, elements.next(), depth + 1);
+                json.append(elements.hasNext() ? ",\n" : "\n");
+            }
+            indent(json, depth);
+            json.append(']');
+        } else if( value instanceof Number || value instanceof Boolean ){
+            json.append(value);
+        } else {
+            appendString(json, String.valueOf(value));
+        }
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for( int i = 0; i < value.length(); i++ ){
+            char c = value.charAt(i);
+            switch(c){
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if( c < 0x20 ){
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+
+    private static void indent(StringBuilder json, int depth) {
+        for( int i = 0; i < depth; i++ ){
+            json.append(INDENT);
+        }
+    }
+}
@@ -25,32 +25,50 @@ import com.sun.javafx.tools.packager.PackagerException;
 import com.sun.javafx.tools.packager.SignJarParams;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.FileVisitResult;
-import java.nio.file.FileVisitor;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * @goal build-native
  */
 public class NativeMojo extends AbstractJfxToolsMojo {
 
+    private static final String CFG_WORKAROUND_205_MARKER = "cfgWorkaround205Marker";
+    private static final String CFG_WORKAROUND_205_DONE_MARKER = CFG_WORKAROUND_205_MARKER + ".done";
+    private static final String JNLP_POST_PROCESSING = "jnlp post-processing";
+    private static final String SHARED_APP_IMAGE_TASK = "app-image";
+    private static final List<String> SHARED_APP_IMAGE_PARAMS = Arrays.asList("mac.app.image", "jfx.app.image");
+    private static final String RUNTIME_PARAM = "runtime";
+    private static final String BUNDLE_TYPE_INSTALLER = "INSTALLER";
+    private static final String JAVAFX_PACKAGER_PACKAGE = "com.oracle.tools.packager.";
+    private static final String FINGERPRINT_BUNDLE_PATH = "output";
+    private static final String FINGERPRINT_BUNDLE_CONTENT = "bundle";
+
     /**
      * Used as the 'id' of the application, and is used as the CFBundleDisplayName on Mac. See the official JavaFX
      * Packaging tools documentation for other information on this. Will be used as GUID on some installers too.
@@ -369,8 +387,212 @@ public class NativeMojo extends AbstractJfxToolsMojo {
      */
     protected boolean skipNativeLauncherWorkaround205;
 
+    /**
+     * How additional app resources are put into the app-folder. Possible values are "copy" (default), "link" (hard-link)
+     * and "clone" (copy-on-write, requires filesystem-support). When linking or cloning is not possible, a normal copy
+     * is made.
+     *
+     * @parameter property="jfx.stagingMode" default-value="copy"
+     * @since 8.6.0
+     */
+    protected String stagingMode;
+
+    /**
+     * Amount of threads used for copying additional app resources into the app-folder.
+     *
+     * @parameter property="jfx.stagingThreads" default-value=1
+     * @since 8.6.0
+     */
+    protected int stagingThreads;
+
+    /**
+     * Additional app resources are only copied again when their size or modification-time changed since the last
+     * build, files which got removed from &lt;additionalAppResources&gt; get removed from the app-folder too. Set this
+     * to true for comparing content-hashes instead of modification-times.
+     *
+     * @parameter property="jfx.stagingCompareHashes" default-value=false
+     * @since 8.6.0
+     */
+    protected boolean stagingCompareHashes;
+
+    /**
+     * Glob-patterns (relative to the app-folder, like "**&#47;*.jar" or "docs/**") of the files inside the app-folder
+     * which should become application resources of the native bundles, all files are used when not set.
+     *
+     * @parameter
+     * @since 8.6.0
+     */
+    protected List<String> appResourcesIncludes;
+
+    /**
+     * Glob-patterns (relative to the app-folder, like "**&#47;*.bak" or "docs/**") of the files inside the app-folder
+     * which should not become application resources of the native bundles, matching folders are skipped as a whole.
+     *
+     * @parameter
+     * @since 8.6.0
+     */
+    protected List<String> appResourcesExcludes;
+
+    /**
+     * Set this to true for embedding some minimized Java runtime into the native bundles instead of the whole JRE
+     * running this build. The required modules are found by analyzing all jar-files inside the app-folder, the runtime
+     * image gets created by jlink (requires some JDK 9 or newer) and is passed to the bundlers via "runtime". Does
+     * nothing when "runtime" is set inside &lt;bundleArguments&gt;.
+     *
+     * @parameter property="jfx.minimizeRuntime" default-value=false
+     * @since 8.6.0
+     */
+    protected boolean minimizeRuntime;
+
+    /**
+     * Modules to add to the minimized runtime (when using &lt;minimizeRuntime&gt;), which are not found by analyzing
+     * the classes, like modules only used via services or reflection (e.g. "jdk.localedata", "jdk.crypto.ec" or
+     * "jdk.charsets").
+     *
+     * @parameter
+     * @since 8.6.0
+     */
+    protected List<String> runtimeAdditionalModules;
+
+    /**
+     * Options passed to jlink when creating the minimized runtime (when using &lt;minimizeRuntime&gt;), defaults to
+     * "--strip-debug", "--no-header-files" and "--no-man-pages".
+     *
+     * @parameter
+     * @since 8.6.0
+     */
+    protected List<String> runtimeJlinkOptions;
+
+    /**
+     * Minimized runtimes are cached inside this folder by the JDK, the modules and the jlink-options, so all builds
+     * (and all projects) requiring the same modules share the same runtime image.
+     *
+     * @parameter property="jfx.runtimeCacheDirectory" default-value="${user.home}/.m2/jfx-runtimes"
+     * @since 8.6.0
+     */
+    protected File runtimeCacheDirectory;
+
+    /**
+     * When using &lt;stagingMode&gt;link&lt;/stagingMode&gt;, all files inside the app-folder might be the same files as
+     * inside your local repository or your sources. Set this to true when you are using some bundler which modifies
+     * these files in place, all hard-linked files inside the app-folder get replaced by real copies before any bundler
+     * is executed.
+     *
+     * @parameter default-value=false
+     * @since 8.6.0
+     */
+    protected boolean detachLinkedAppResources;
+
+    /**
+     * Set this to true for creating some Class Data Sharing archive (AppCDS) for the main launcher. The application
+     * gets started once while building (using the JVM running this build) and all loaded classes get recorded, these
+     * classes are then put into some archive inside the app-folder, which the JVM maps into memory instead of loading
+     * and verifying them again on every start. The required "-XX:SharedArchiveFile" gets added to the JVM arguments.
+     * <p>
+     * The application gets started like the native launcher does (only the main jar on the classpath), and the archive
+     * is only used when the JVM still accepts it after moving the application (which happens when installing the
+     * bundle), older JVMs only accept the paths used while building and skip this with some warning. As the archive
+     * only works with the JVM it got created with, this is skipped when some minimized runtime got created via
+     * &lt;minimizeRuntime&gt; or when "runtime" is set inside &lt;bundleArguments&gt;. Whenever no archive gets created, the one of some previous build
+     * gets removed from the app-folder.
+     * <p>
+     * Archives are cached inside "target/jfx/cds" by the hash of all jar-files of the classpath, so profiling only
+     * happens after some jar-file changed. On Java 8 this requires the Oracle JDK, where AppCDS is some commercial
+     * feature.
+     *
+     * @parameter property="jfx.appCds" default-value=false
+     * @since 8.6.0
+     */
+    protected boolean appCds;
+
+    /**
+     * When profiling the application for &lt;appCds&gt;, the application gets stopped as soon as this class got loaded
+     * (e.g. the controller of the first visible scene). Without this, the application runs until it exits by itself or
+     * until &lt;appCdsTimeout&gt; is reached.
+     *
+     * @parameter property="jfx.appCdsMarkerClass"
+     * @since 8.6.0
+     */
+    protected String appCdsMarkerClass;
+
+    /**
+     * Maximum seconds to run the application while profiling for &lt;appCds&gt;.
+     *
+     * @parameter property="jfx.appCdsTimeout" default-value=30
+     * @since 8.6.0
+     */
+    protected int appCdsTimeout;
+
+    /**
+     * Additional JVM arguments used while profiling the application for &lt;appCds&gt;. For profiling on headless
+     * build-agents, you can use Monocle:
+     * <pre>
+     *     &lt;appCdsProfilingJvmArgs&gt;
+     *         &lt;appCdsProfilingJvmArg&gt;-Dglass.platform=Monocle&lt;/appCdsProfilingJvmArg&gt;
+     *         &lt;appCdsProfilingJvmArg&gt;-Dmonocle.platform=Headless&lt;/appCdsProfilingJvmArg&gt;
+     *         &lt;appCdsProfilingJvmArg&gt;-Dprism.order=sw&lt;/appCdsProfilingJvmArg&gt;
+     *     &lt;/appCdsProfilingJvmArgs&gt;
+     * </pre>
+     *
+     * @parameter
+     * @since 8.6.0
+     */
+    protected List<String> appCdsProfilingJvmArgs;
+
+    /**
+     * Maximum number of bundlers running at the same time. Bundlers not depending on each other (like "deb", "rpm" and
+     * "jnlp") then run in parallel, while bundlers requiring the result of another one wait for it: the linux installers
+     * wait for "linux.app" when the workaround for issue 205 is active, signing the jar-files waits for "jnlp". The
+     * output of every bundler gets collected and logged as one block after it finished (the verbose output of the
+     * JavaFX packager itself is not part of it). When using more than one thread, some failing bundler does not stop the
+     * other bundlers (only the ones waiting for it), the build fails after all of them are done. Using only one thread
+     * stops at the first failing bundler. Use 0 for the number of available processors.
+     *
+     * @parameter property="jfx.bundlerThreads" default-value=1
+     * @since 8.6.0
+     */
+    protected int bundlerThreads;
+
+    /**
+     * Set this to true for building the application image (runtime, application and launchers) only once, all
+     * installer bundlers then build from this image instead of creating their own copy of it. When the image bundler of
+     * the current platform is not selected itself, the image gets built into "target/jfx/app-image". The native linux
+     * launchers inside this image are already fixed (see issues 124 and 205).
+     * <p>
+     * The image gets passed via the bundler-arguments "mac.app.image" (used by the mac installers of the JavaFX
+     * packager) and "jfx.app.image" (for custom bundlers). The linux and windows installers of the JavaFX packager of
+     * JDK 8 can't build from some existing image, they still create their own one. When none of the selected installers
+     * is able to use the image, it doesn't get built at all.
+     *
+     * @parameter property="jfx.sharedAppImage" default-value=false
+     * @since 8.6.0
+     */
+    protected boolean sharedAppImage;
+
+    /**
+     * Set this to true for skipping bundlers when nothing has changed since their last run. For every bundler, a
+     * fingerprint of all bundler-arguments gets stored inside "target/jfx/bundler-fingerprints", containing the
+     * content-hashes of all application resources and of the runtime, the launchers, file associations and all
+     * &lt;bundleArguments&gt;. Some bundler only gets skipped when its fingerprint and the bundle it created last time
+     * are both unchanged. Bundlers not telling where their bundle got created (like the JNLP bundler) always run.
+     *
+     * @parameter property="jfx.skipUnchangedBundles" default-value=false
+     * @since 8.6.0
+     */
+    protected boolean skipUnchangedBundles;
+
     protected Workarounds workarounds = null;
 
+    private BundlerScheduler bundlerScheduler = null;
+
+    private final Set<String> executedBundlers = Collections.synchronizedSet(new HashSet<>());
+
+    @Override
+    public Log getLog() {
+        // everything logged while running some bundler has to end up inside the log of that bundler
+        return bundlerScheduler == null ? super.getLog() : bundlerScheduler.getLog();
+    }
+
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
         if( jfxCallFromCLI ){
@@ -378,8 +600,18 @@ public class NativeMojo extends AbstractJfxToolsMojo {
             return;
         }
 
+        startBuildReport("build-native");
+        try{
+            buildNative();
+        } finally{
+            finishBuildReport();
+        }
+    }
+
+    private void buildNative() throws MojoExecutionException, MojoFailureException {
         getLog().info("Building Native Installers");
 
+        bundlerScheduler = new BundlerScheduler(bundlerThreads > 0 ? bundlerThreads : Runtime.getRuntime().availableProcessors(), super.getLog());
         workarounds = new Workarounds(nativeOutputDir, getLog());
 
         try{
@@ -397,7 +629,7 @@ public class NativeMojo extends AbstractJfxToolsMojo {
             params.put(StandardBundlerParam.VENDOR.getID(), vendor);
             params.put(StandardBundlerParam.SHORTCUT_HINT.getID(), needShortcut);
             params.put(StandardBundlerParam.MENU_HINT.getID(), needMenu);
-            params.put(StandardBundlerParam.MAIN_CLASS.getID(), mainClass);
+            params.put(StandardBundlerParam.MAIN_CLASS.getID(), getLauncherMainClass());
 
             Optional.ofNullable(jvmProperties).ifPresent(jvmProps -> {
                 params.put(StandardBundlerParam.JVM_PROPERTIES.getID(), new HashMap<>(jvmProps));
@@ -414,55 +646,44 @@ public class NativeMojo extends AbstractJfxToolsMojo {
 
             // bugfix for #83 (by copying additional resources to /target/jfx/app folder)
             // https://github.com/javafx-maven-plugin/javafx-maven-plugin/issues/83
-            Optional.ofNullable(additionalAppResources).filter(File::exists).ifPresent(appResources -> {
-                try{
-                    Path targetFolder = jfxAppOutputDir.toPath();
-                    Path sourceFolder = appResources.toPath();
-                    Files.walkFileTree(appResources.toPath(), new FileVisitor<Path>() {
-
-                        @Override
-                        public FileVisitResult preVisitDirectory(Path subfolder, BasicFileAttributes attrs) throws IOException {
-                            // do create subfolder (if needed)
-                            Files.createDirectories(targetFolder.resolve(sourceFolder.relativize(subfolder)));
-                            return FileVisitResult.CONTINUE;
-                        }
-
-                        @Override
-                        public FileVisitResult visitFile(Path sourceFile, BasicFileAttributes attrs) throws IOException {
-                            // do copy
-                            Files.copy(sourceFile, targetFolder.resolve(sourceFolder.relativize(sourceFile)), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
-                            return FileVisitResult.CONTINUE;
-                        }
+            FileStager fileStager = new FileStager(stagingThreads, stagingMode, getLog());
+            syncAdditionalAppResources(fileStager);
+
+            if( detachLinkedAppResources ){
+                try(BuildReport.Stage stage = getBuildReport().startStage("detach linked app resources")){
+                    int detachedFiles = fileStager.breakLinks(jfxAppOutputDir.toPath());
+                    getLog().info(String.format("Replaced %s linked files inside application resources by copies.", detachedFiles));
+                    stage.addFiles(detachedFiles);
+                } catch(IOException ex){
+                    throw new MojoExecutionException("Couldn't replace linked files inside application resources", ex);
+                }
+            }
 
-                        @Override
-                        public FileVisitResult visitFileFailed(Path source, IOException ioe) throws IOException {
-                            // don't fail, just inform user
-                            getLog().warn(String.format("Couldn't copy additional app resource %s with reason %s", source.toString(), ioe.getLocalizedMessage()));
-                            return FileVisitResult.CONTINUE;
-                        }
+            if( minimizeRuntime ){
+                try(BuildReport.Stage stage = getBuildReport().startStage("minimize runtime")){
+                    createMinimizedRuntime(params);
+                }
+            }
 
-                        @Override
-                        public FileVisitResult postVisitDirectory(Path source, IOException ioe) throws IOException {
-                            // nothing to do here
-                            return FileVisitResult.CONTINUE;
-                        }
-                    });
-                } catch(IOException e){
-                    getLog().warn(e);
+            // the archive only works with the JVM running this build, so it has to be known if some other runtime gets bundled
+            boolean appCdsArchiveCreated = false;
+            if( appCds ){
+                try(BuildReport.Stage stage = getBuildReport().startStage("AppCDS archive")){
+                    appCdsArchiveCreated = createClassDataSharingArchive(params);
                 }
-            });
+            }
+            if( !appCdsArchiveCreated ){
+                removeClassDataSharingArchive();
+            }
 
             // gather all files for our application bundle
             Set<File> resourceFiles = new HashSet<>();
-            try{
-                Files.walk(jfxAppOutputDir.toPath())
-                        .map(p -> p.toFile())
-                        .filter(File::isFile)
-                        .filter(File::canRead)
-                        .forEach(f -> {
-                            getLog().info(String.format("Add %s file to application resources.", f));
-                            resourceFiles.add(f);
-                        });
+            try(BuildReport.Stage stage = getBuildReport().startStage("enumerate app resources")){
+                AppResourceEnumerator.Result appResources = new AppResourceEnumerator(appResourcesIncludes, appResourcesExcludes, Boolean.TRUE.equals(verbose), getLog()).enumerate(jfxAppOutputDir.toPath());
+                getLog().info("Application resources: " + appResources.getSummary());
+                resourceFiles.addAll(appResources.getFiles());
+                stage.addBytes(appResources.getTotalBytes());
+                stage.addFiles(appResources.getFiles().size());
             } catch(IOException e){
                 getLog().warn(e);
             }
@@ -554,7 +775,9 @@ public class NativeMojo extends AbstractJfxToolsMojo {
             // https://github.com/javafx-maven-plugin/javafx-maven-plugin/issues/167
             if( workarounds.isWorkaroundForBug167Needed() ){
                 if( !skipNativeLauncherWorkaround167 ){
-                    workarounds.applyWorkaround167(params);
+                    try(BuildReport.Stage stage = getBuildReport().startStage("workaround 167")){
+                        workarounds.applyWorkaround167(params);
+                    }
                 } else {
                     getLog().info("Skipped workaround for native launcher regarding cfg-file-format.");
                 }
@@ -584,111 +807,534 @@ public class NativeMojo extends AbstractJfxToolsMojo {
                 });
             });
 
-            final String cfgWorkaround205Marker = "cfgWorkaround205Marker";
-            final String cfgWorkaround205DoneMarker = cfgWorkaround205Marker + ".done";
-            boolean foundBundler = false;
-            for( Bundler b : bundlers.getBundlers() ){
-                try{
-                    boolean runBundler = true;
-                    if( bundler != null && !"ALL".equalsIgnoreCase(bundler) && !bundler.equalsIgnoreCase(b.getID()) ){
-                        // this is not the specified bundler
-                        runBundler = false;
-                    }
+            // only build the application image once, when some selected installer is able to build from it
+            boolean useSharedAppImage = sharedAppImage && bundlers.getBundlers().stream().filter(this::isSelectedBundler).anyMatch(this::canBuildFromSharedAppImage);
+            if( sharedAppImage && !useSharedAppImage ){
+                getLog().info("Not building a shared application image, none of the selected installer bundlers is able to build from it.");
+            }
 
-                    // Workaround for native installer bundle not creating working executable native launcher
-                    // (this is a comeback of issue 124)
-                    // https://github.com/javafx-maven-plugin/javafx-maven-plugin/issues/205
-                    // do run application bundler and put the cfg-file to application resources
-                    if( System.getProperty("os.name").toLowerCase().startsWith("linux") ){
-                        if( workarounds.isWorkaroundForBug205Needed() ){
-                            // check if special conditions for this are met (not jnlp, but not linux.app too, because there another workaround already works)
-                            if( !"jnlp".equalsIgnoreCase(bundler) && !"linux.app".equalsIgnoreCase(bundler) && "linux.app".equalsIgnoreCase(b.getID()) ){
-                                if( !skipNativeLauncherWorkaround205 ){
-                                    getLog().info("Detected linux application bundler needs to run before installer bundlers are executed.");
-                                    runBundler = true;
-                                    params.put(cfgWorkaround205Marker, "true");
-                                } else {
-                                    getLog().info("Skipped workaround for native linux installer bundlers.");
-                                }
+            List<Bundler> bundlersToRun = new ArrayList<>();
+            boolean runApplicationBundlerFirst = false;
+            for( Bundler b : bundlers.getBundlers() ){
+                boolean runBundler = isSelectedBundler(b);
+
+                // Workaround for native installer bundle not creating working executable native launcher
+                // (this is a come-back of issue 124)
+                // https://github.com/javafx-maven-plugin/javafx-maven-plugin/issues/205
+                // do run application bundler and put the cfg-file to application resources
+                if( System.getProperty("os.name").toLowerCase().startsWith("linux") ){
+                    if( workarounds.isWorkaroundForBug205Needed() ){
+                        // check if special conditions for this are met (not jnlp, but not linux.app too, because there another workaround already works)
+                        if( !"jnlp".equalsIgnoreCase(bundler) && !"linux.app".equalsIgnoreCase(bundler) && "linux.app".equalsIgnoreCase(b.getID()) ){
+                            if( !skipNativeLauncherWorkaround205 ){
+                                getLog().info("Detected linux application bundler needs to run before installer bundlers are executed.");
+                                // when sharing the application image, it gets built by the linux application bundler anyway
+                                runBundler = runBundler || !useSharedAppImage;
+                                runApplicationBundlerFirst = true;
+                                params.put(CFG_WORKAROUND_205_MARKER, "true");
+                            } else {
+                                getLog().info("Skipped workaround for native linux installer bundlers.");
                             }
                         }
                     }
-                    if( !runBundler ){
-                        continue;
+                }
+                if( runBundler ){
+                    bundlersToRun.add(b);
+                }
+            }
+            if( bundlersToRun.isEmpty() ){
+                getLog().warn("No bundler found for given id " + bundler + ". Please check your configuration.");
+            }
+
+            // build the application image only once, all installers build from it
+            AtomicReference<File> sharedAppImageDirectory = new AtomicReference<>();
+            String sharedAppImageTask = null;
+            if( useSharedAppImage ){
+                Bundler imageBundler = getPlatformImageBundler(bundlers);
+                if( imageBundler == null ){
+                    getLog().warn("No application image bundler found for this platform, all installers build their own application image.");
+                } else if( bundlersToRun.contains(imageBundler) ){
+                    sharedAppImageTask = imageBundler.getID();
+                } else {
+                    sharedAppImageTask = SHARED_APP_IMAGE_TASK;
+                    File sharedAppImageOutputDir = new File(getJfxBuildDirectory(), SHARED_APP_IMAGE_TASK);
+                    bundlerScheduler.addTask(sharedAppImageTask, Collections.emptyList(), () -> sharedAppImageDirectory.set(runBundler(imageBundler, params, sharedAppImageOutputDir, null)));
+                }
+            }
+
+            for( Bundler b : bundlersToRun ){
+                List<String> dependencies = new ArrayList<>();
+                boolean isInstaller = BUNDLE_TYPE_INSTALLER.equals(b.getBundleType());
+                boolean usesSharedAppImage = sharedAppImageTask != null && canBuildFromSharedAppImage(b);
+                if( runApplicationBundlerFirst && !"linux.app".equals(b.getID()) && isInstaller ){
+                    // installers require the cfg-files prepared after running the linux application bundler,
+                    // when sharing the application image this happens inside the task building the image
+                    if( bundlersToRun.stream().anyMatch(otherBundler -> "linux.app".equals(otherBundler.getID())) ){
+                        dependencies.add("linux.app");
+                    } else if( sharedAppImageTask != null ){
+                        dependencies.add(sharedAppImageTask);
                     }
-                    foundBundler = true;
-
-                    Map<String, ? super Object> paramsToBundleWith = new HashMap<>(params);
-                    if( b.validate(paramsToBundleWith) ){
-                        b.execute(paramsToBundleWith, nativeOutputDir);
-
-                        // Workaround for "Native package for Ubuntu doesn't work"
-                        // https://github.com/javafx-maven-plugin/javafx-maven-plugin/issues/124
-                        // real bug: linux-launcher from oracle-jdk starting from 1.8.0u40 logic to determine .cfg-filename
-                        if( workarounds.isWorkaroundForBug124Needed() ){
-                            if( "linux.app".equals(b.getID()) ){
-                                getLog().info("Applying workaround for oracle-jdk-bug since 1.8.0u40 regarding native linux launcher(s).");
-                                if( !skipNativeLauncherWorkaround124 ){
-                                    workarounds.applyWorkaround124(appName, secondaryLaunchers);
-                                    // only apply workaround for issue 205 when having workaround for issue 124 active
-                                    if( Boolean.parseBoolean(String.valueOf(params.get(cfgWorkaround205Marker))) && !Boolean.parseBoolean((String) params.get(cfgWorkaround205DoneMarker)) ){
-                                        getLog().info("Preparing workaround for oracle-jdk-bug since 1.8.0u40 regarding native linux launcher(s) inside native linux installers.");
-                                        workarounds.applyWorkaround205(appName, secondaryLaunchers, params);
-                                        params.put(cfgWorkaround205DoneMarker, "true");
-                                    }
-                                } else {
-                                    getLog().info("Skipped workaround for native linux launcher(s).");
-                                }
-                            }
+                }
+                if( usesSharedAppImage && !dependencies.contains(sharedAppImageTask) ){
+                    dependencies.add(sharedAppImageTask);
+                }
+                if( b.getID().equals(sharedAppImageTask) ){
+                    bundlerScheduler.addTask(b.getID(), dependencies, () -> sharedAppImageDirectory.set(runBundler(b, params, nativeOutputDir, null)));
+                } else {
+                    bundlerScheduler.addTask(b.getID(), dependencies, () -> runBundler(b, params, nativeOutputDir, usesSharedAppImage ? sharedAppImageDirectory.get() : null));
+                }
+                if( "jnlp".equals(b.getID()) ){
+                    bundlerScheduler.addTask(JNLP_POST_PROCESSING, Collections.singletonList(b.getID()), () -> {
+                        if( executedBundlers.contains(b.getID()) ){
+                            postProcessJnlpBundle(params);
                         }
+                    });
+                }
+            }
 
-                        if( "jnlp".equals(b.getID()) ){
-                            if( workarounds.isWorkaroundForBug182Needed() ){
-                                // Workaround for "JNLP-generation: path for dependency-lib on windows with backslash"
-                                // https://github.com/javafx-maven-plugin/javafx-maven-plugin/issues/182
-                                getLog().info("Applying workaround for oracle-jdk-bug since 1.8.0u60 regarding jar-path inside generated JNLP-files.");
-                                if( !skipJNLPRessourcePathWorkaround182 ){
-                                    workarounds.fixPathsInsideJNLPFiles();
-                                } else {
-                                    getLog().info("Skipped workaround for jar-paths jar-path inside generated JNLP-files.");
-                                }
-                            }
+            Map<String, Exception> failures = bundlerScheduler.run();
+            if( !failures.isEmpty() ){
+                Exception failure = failures.values().iterator().next();
+                if( failures.size() == 1 && failure instanceof MojoFailureException ){
+                    throw (MojoFailureException) failure;
+                }
+                if( failures.size() == 1 && failure instanceof MojoExecutionException ){
+                    throw (MojoExecutionException) failure;
+                }
+                throw new MojoExecutionException("An error occurred while generating native deployment bundles, failed: " + String.join(", ", failures.keySet()), failure);
+            }
+        } catch(RuntimeException e){
+            throw new MojoExecutionException("An error occurred while generating native deployment bundles", e);
+        }
+    }
 
-                            // Do sign generated jar-files by calling the packager (this might change in the future,
-                            // hopefully when oracle reworked the process inside the JNLP-bundler)
-                            // https://github.com/javafx-maven-plugin/javafx-maven-plugin/issues/185
-                            if( workarounds.isWorkaroundForBug185Needed(params) ){
-                                getLog().info("Signing jar-files referenced inside generated JNLP-files.");
-                                if( !skipSigningJarFilesJNLP185 ){
-                                    // JavaFX signing using BLOB method will get dropped on JDK 9: "blob signing is going away in JDK9. "
-                                    // https://bugs.openjdk.java.net/browse/JDK-8088866?focusedCommentId=13889898#comment-13889898
-                                    if( !noBlobSigning ){
-                                        getLog().info("Signing jar-files using BLOB method.");
-                                        signJarFilesUsingBlobSigning();
-                                    } else {
-                                        getLog().info("Signing jar-files using jarsigner.");
-                                        signJarFiles();
-                                    }
-                                    workarounds.applyWorkaround185(skipSizeRecalculationForJNLP185);
-                                } else {
-                                    getLog().info("Skipped signing jar-files referenced inside JNLP-files.");
-                                }
+    /**
+     * Mirrors the additional app resources into the app-folder, only changed files get copied. Files placed by some
+     * previous build which are not part of the additional app resources anymore get removed.
+     */
+    private void syncAdditionalAppResources(FileStager fileStager) throws MojoExecutionException {
+        File stateFile = new File(getJfxBuildDirectory(), "app-resources.staging");
+        boolean hasAppResources = additionalAppResources != null && additionalAppResources.isDirectory();
+        if( !hasAppResources && !stateFile.isFile() ){
+            return;
+        }
+        List<FileStager.StagedFile> filesToStage = new ArrayList<>();
+        if( hasAppResources ){
+            Path sourceFolder = additionalAppResources.toPath();
+            Path targetFolder = jfxAppOutputDir.toPath();
+            // try-ressource, because walking on files is lazy, resulting in file-handler left open otherwise
+            try(Stream<Path> walkstream = Files.walk(sourceFolder)){
+                walkstream.filter(Files::isRegularFile).forEach(sourceFile -> {
+                    filesToStage.add(new FileStager.StagedFile(sourceFile.toFile(), targetFolder.resolve(sourceFolder.relativize(sourceFile)).toFile()));
+                });
+            } catch(IOException | UncheckedIOException ex){
+                throw new MojoExecutionException("Couldn't read additional app resources " + additionalAppResources, ex);
+            }
+        }
+        FileStager.SyncResult syncResult;
+        try(BuildReport.Stage stage = getBuildReport().startStage("copy additional app resources")){
+            syncResult = fileStager.sync(filesToStage, jfxAppOutputDir, stateFile, stagingCompareHashes, null);
+            syncResult.getCopied().forEach(stage::addOutput);
+        }
+        getLog().info("Synchronized additional app resources: " + syncResult.getSummary());
+        syncResult.getBroken().forEach(brokenFile -> {
+            // don't fail, just inform user
+            getLog().warn(String.format("Couldn't copy additional app resource %s", brokenFile));
+        });
+    }
+
+    /**
+     * Runs the bundler on its own copy of the params.
+     *
+     * @param outputDirectory where to create the bundle
+     * @param appImage the shared application image to build from, might be null
+     * @return the created bundle, or null when the bundler was skipped (or did not create anything)
+     */
+    private File runBundler(Bundler b, Map<String, ? super Object> params, File outputDirectory, File appImage) throws MojoExecutionException {
+        Map<String, ? super Object> paramsToBundleWith;
+        synchronized(params){
+            // the workaround for issue 205 changes the params while other bundlers might be running
+            paramsToBundleWith = new HashMap<>(params);
+        }
+        if( appImage != null ){
+            getLog().info(String.format("Building %s from application image %s", b.getID(), appImage));
+            SHARED_APP_IMAGE_PARAMS.forEach(sharedAppImageParam -> paramsToBundleWith.put(sharedAppImageParam, appImage));
+        }
+        try{
+            if( !b.validate(paramsToBundleWith) ){
+                return null;
+            }
+        } catch(UnsupportedPlatformException e){
+            // quietly ignored
+            return null;
+        } catch(ConfigException e){
+            getLog().info("Skipping " + b.getName() + " because of configuration error " + e.getMessage() + "\nAdvice to Fix: " + e.getAdvice());
+            return null;
+        }
+        InputFingerprint inputFingerprint = null;
+        InputFingerprint outputFingerprint = null;
+        File bundle = null;
+        if( skipUnchangedBundles ){
+            try{
+                inputFingerprint = createBundlerFingerprint(b, paramsToBundleWith, outputDirectory);
+                outputFingerprint = new InputFingerprint(new File(getBundlerFingerprintDirectory(), b.getID() + ".output.fingerprint"));
+                bundle = getUnchangedBundle(b, inputFingerprint, outputFingerprint);
+            } catch(IOException ex){
+                getLog().warn("Couldn't create fingerprint for bundler " + b.getID() + ", it won't be skipped", ex);
+                inputFingerprint = null;
+            }
+        }
+        boolean unchangedBundle = bundle != null;
+        if( unchangedBundle ){
+            getLog().info(String.format("Skipping %s, no changes since last build (keeping %s)", b.getID(), bundle));
+            getBuildReport().addStage("bundler " + b.getID() + " (unchanged)", 0, 0, 0);
+        } else {
+            if( inputFingerprint != null ){
+                // when bundling fails in between, we must not skip next time
+                inputFingerprint.invalidate();
+                outputFingerprint.invalidate();
+            }
+            if( !nativeOutputDir.equals(outputDirectory) ){
+                // private folder of this plugin, don't keep anything from previous builds
+                try{
+                    FileStager.deleteRecursive(outputDirectory.toPath());
+                } catch(IOException ex){
+                    throw new MojoExecutionException("Couldn't clean folder " + outputDirectory, ex);
+                }
+            }
+            try(BuildReport.Stage stage = getBuildReport().startStage("bundler " + b.getID())){
+                bundle = b.execute(paramsToBundleWith, outputDirectory);
+                stage.addOutput(bundle);
+            }
+        }
+        executedBundlers.add(b.getID());
+
+        // the workarounds expect the bundles inside their output directory
+        Workarounds bundleWorkarounds = nativeOutputDir.equals(outputDirectory) ? workarounds : new Workarounds(outputDirectory, getLog());
+
+        // Workaround for "Native package for Ubuntu doesn't work"
+        // https://github.com/javafx-maven-plugin/javafx-maven-plugin/issues/124
+        // real bug: linux-launcher from oracle-jdk starting from 1.8.0u40 logic to determine .cfg-filename
+        if( bundleWorkarounds.isWorkaroundForBug124Needed() ){
+            if( "linux.app".equals(b.getID()) ){
+                getLog().info("Applying workaround for oracle-jdk-bug since 1.8.0u40 regarding native linux launcher(s).");
+                if( !skipNativeLauncherWorkaround124 ){
+                    if( !unchangedBundle ){
+                        try(BuildReport.Stage stage = getBuildReport().startStage("workaround 124")){
+                            bundleWorkarounds.applyWorkaround124(appName, secondaryLaunchers);
+                        }
+                    }
+                    // only apply workaround for issue 205 when having workaround for issue 124 active
+                    synchronized(params){
+                        if( Boolean.parseBoolean(String.valueOf(params.get(CFG_WORKAROUND_205_MARKER))) && !Boolean.parseBoolean((String) params.get(CFG_WORKAROUND_205_DONE_MARKER)) ){
+                            getLog().info("Preparing workaround for oracle-jdk-bug since 1.8.0u40 regarding native linux launcher(s) inside native linux installers.");
+                            try(BuildReport.Stage stage = getBuildReport().startStage("workaround 205")){
+                                bundleWorkarounds.applyWorkaround205(appName, secondaryLaunchers, params);
                             }
+                            params.put(CFG_WORKAROUND_205_DONE_MARKER, "true");
                         }
                     }
-                } catch(UnsupportedPlatformException e){
-                    // quietly ignored
-                } catch(ConfigException e){
-                    getLog().info("Skipping " + b.getName() + " because of configuration error " + e.getMessage() + "\nAdvice to Fix: " + e.getAdvice());
+                } else {
+                    getLog().info("Skipped workaround for native linux launcher(s).");
                 }
             }
-            if( !foundBundler ){
-                getLog().warn("No bundler found for given id " + bundler + ". Please check your configuration.");
+        }
+
+        if( inputFingerprint != null && !unchangedBundle ){
+            storeBundlerFingerprint(b, inputFingerprint, outputFingerprint, bundle, outputDirectory);
+        }
+        return bundle;
+    }
+
+    private File getBundlerFingerprintDirectory() {
+        return new File(getJfxBuildDirectory(), "bundler-fingerprints");
+    }
+
+    private InputFingerprint createBundlerFingerprint(Bundler b, Map<String, ? super Object> paramsToBundleWith, File outputDirectory) throws IOException {
+        InputFingerprint fingerprint = new InputFingerprint(new File(getBundlerFingerprintDirectory(), b.getID() + ".fingerprint"));
+        fingerprint.add("bundler:class", b.getClass().getName());
+        fingerprint.add("bundler:outputDirectory", outputDirectory.getAbsolutePath());
+        // without "runtime", the bundlers are using the JRE running this build
+        fingerprint.add("jvm:java.home", System.getProperty("java.home"));
+        fingerprint.add("jvm:java.runtime.version", System.getProperty("java.runtime.version"));
+        for( String paramKey : new TreeSet<>(paramsToBundleWith.keySet()) ){
+            addBundlerParam(fingerprint, "param:" + paramKey, paramsToBundleWith.get(paramKey));
+        }
+        return fingerprint;
+    }
+
+    private void addBundlerParam(InputFingerprint fingerprint, String key, Object value) throws IOException {
+        if( value instanceof RelativeFileSet ){
+            RelativeFileSet fileSet = (RelativeFileSet) value;
+            fingerprint.add(key, fileSet.getBaseDirectory().getAbsolutePath());
+            for( String includedFile : new TreeSet<>(fileSet.getIncludedFiles()) ){
+                fingerprint.addFile(key + "/" + includedFile.replace('\\', '/'), new File(fileSet.getBaseDirectory(), includedFile));
             }
-        } catch(RuntimeException e){
-            throw new MojoExecutionException("An error occurred while generating native deployment bundles", e);
-        } catch(PackagerException ex){
-            throw new MojoExecutionException("An error occurred while generating native deployment bundles", ex);
+        } else if( value instanceof File ){
+            File file = (File) value;
+            if( file.isDirectory() ){
+                fingerprint.addDirectory(key, file);
+            } else {
+                fingerprint.addFile(key, file);
+            }
+        } else if( value instanceof Map ){
+            Map<?, ?> map = (Map<?, ?>) value;
+            // keys might not be comparable
+            Map<String, Object> sortedMap = new TreeMap<>();
+            map.forEach((mapKey, mapValue) -> sortedMap.put(String.valueOf(mapKey), mapValue));
+            for( Map.Entry<String, Object> entry : sortedMap.entrySet() ){
+                addBundlerParam(fingerprint, key + "." + entry.getKey(), entry.getValue());
+            }
+        } else if( value instanceof Collection ){
+            List<Object> elements = new ArrayList<>((Collection<?>) value);
+            if( value instanceof Set ){
+                // no stable order
+                elements.sort(Comparator.comparing(String::valueOf));
+            }
+            for( int index = 0; index < elements.size(); index++ ){
+                addBundlerParam(fingerprint, key + "[" + index + "]", elements.get(index));
+            }
+        } else {
+            fingerprint.add(key, value);
+        }
+    }
+
+    /**
+     * @return the bundle created last time, when all inputs and the bundle itself are unchanged, otherwise null
+     */
+    private File getUnchangedBundle(Bundler b, InputFingerprint inputFingerprint, InputFingerprint outputFingerprint) throws IOException {
+        String previousBundlePath = outputFingerprint.getPreviousValue(FINGERPRINT_BUNDLE_PATH);
+        if( previousBundlePath == null ){
+            return null;
+        }
+        if( !inputFingerprint.isUnchanged() ){
+            List<String> changedInputs = inputFingerprint.getChangedKeys();
+            getLog().info(String.format("Running %s, because %s input(s) changed since last build, first one: %s", b.getID(), changedInputs.size(), changedInputs.get(0)));
+            changedInputs.forEach(changedInput -> getLog().debug("Changed input: " + changedInput));
+            return null;
+        }
+        File previousBundle = new File(previousBundlePath);
+        addBundle(outputFingerprint, previousBundle);
+        if( !outputFingerprint.isUnchanged() ){
+            getLog().info(String.format("Running %s, because its previous bundle %s got changed or removed", b.getID(), previousBundle));
+            return null;
+        }
+        return previousBundle;
+    }
+
+    private void storeBundlerFingerprint(Bundler b, InputFingerprint inputFingerprint, InputFingerprint outputFingerprint, File bundle, File outputDirectory) {
+        if( bundle == null || !bundle.exists() || bundle.getAbsoluteFile().equals(outputDirectory.getAbsoluteFile()) ){
+            // the whole output directory would contain the bundles of all other bundlers too
+            getLog().debug("Not storing fingerprint of bundler " + b.getID() + ", because its bundle is unknown");
+            return;
+        }
+        try{
+            // start from scratch, the bundle got created again
+            InputFingerprint bundleFingerprint = new InputFingerprint(outputFingerprint.getStoreFile());
+            addBundle(bundleFingerprint, bundle);
+            inputFingerprint.store();
+            bundleFingerprint.store();
+        } catch(IOException ex){
+            getLog().warn("Couldn't store fingerprint of bundler " + b.getID() + ", next build won't be able to skip it", ex);
+        }
+    }
+
+    private void addBundle(InputFingerprint outputFingerprint, File bundle) throws IOException {
+        outputFingerprint.add(FINGERPRINT_BUNDLE_PATH, bundle.getAbsolutePath());
+        if( bundle.isDirectory() ){
+            outputFingerprint.addDirectory(FINGERPRINT_BUNDLE_CONTENT, bundle);
+        } else {
+            outputFingerprint.addFile(FINGERPRINT_BUNDLE_CONTENT, bundle);
+        }
+    }
+
+    private boolean isSelectedBundler(Bundler b) {
+        return bundler == null || "ALL".equalsIgnoreCase(bundler) || bundler.equalsIgnoreCase(b.getID());
+    }
+
+    private boolean canBuildFromSharedAppImage(Bundler b) {
+        if( !BUNDLE_TYPE_INSTALLER.equals(b.getBundleType()) ){
+            return false;
+        }
+        // the linux and windows installers of the JavaFX packager always create their own application image
+        return b.getID().startsWith("mac.") || !b.getClass().getName().startsWith(JAVAFX_PACKAGER_PACKAGE);
+    }
+
+    private Bundler getPlatformImageBundler(Bundlers bundlers) {
+        String osName = System.getProperty("os.name").toLowerCase();
+        String imageBundlerId;
+        if( osName.startsWith("linux") ){
+            imageBundlerId = "linux.app";
+        } else if( osName.startsWith("windows") ){
+            imageBundlerId = "windows.app";
+        } else if( osName.startsWith("mac") ){
+            imageBundlerId = "mac.app";
+        } else {
+            return null;
+        }
+        return bundlers.getBundlers().stream().filter(b -> imageBundlerId.equals(b.getID())).findFirst().orElse(null);
+    }
+
+    private void postProcessJnlpBundle(Map<String, ? super Object> params) throws MojoFailureException, PackagerException, MojoExecutionException {
+        if( workarounds.isWorkaroundForBug182Needed() ){
+            // Workaround for "JNLP-generation: path for dependency-lib on windows with backslash"
+            // https://github.com/javafx-maven-plugin/javafx-maven-plugin/issues/182
+            getLog().info("Applying workaround for oracle-jdk-bug since 1.8.0u60 regarding jar-path inside generated JNLP-files.");
+            if( !skipJNLPRessourcePathWorkaround182 ){
+                try(BuildReport.Stage stage = getBuildReport().startStage("workaround 182")){
+                    workarounds.fixPathsInsideJNLPFiles();
+                }
+            } else {
+                getLog().info("Skipped workaround for jar-paths jar-path inside generated JNLP-files.");
+            }
+        }
+
+        Map<String, ? super Object> jnlpParams;
+        synchronized(params){
+            jnlpParams = new HashMap<>(params);
+        }
+        // Do sign generated jar-files by calling the packager (this might change in the future,
+        // hopefully when oracle reworked the process inside the JNLP-bundler)
+        // https://github.com/javafx-maven-plugin/javafx-maven-plugin/issues/185
+        if( workarounds.isWorkaroundForBug185Needed(jnlpParams) ){
+            getLog().info("Signing jar-files referenced inside generated JNLP-files.");
+            if( !skipSigningJarFilesJNLP185 ){
+                // JavaFX signing using BLOB method will get dropped on JDK 9: "blob signing is going away in JDK9. "
+                // https://bugs.openjdk.java.net/browse/JDK-8088866?focusedCommentId=13889898#comment-13889898
+                try(BuildReport.Stage stage = getBuildReport().startStage("sign jnlp jar-files")){
+                    if( !noBlobSigning ){
+                        getLog().info("Signing jar-files using BLOB method.");
+                        signJarFilesUsingBlobSigning();
+                    } else {
+                        getLog().info("Signing jar-files using jarsigner.");
+                        signJarFiles();
+                        normalizeSignedJarFiles();
+                    }
+                    workarounds.getJARFilesFromJNLPFiles().forEach(jarFile -> stage.addOutput(new File(nativeOutputDir, jarFile)));
+                }
+                try(BuildReport.Stage stage = getBuildReport().startStage("workaround 185")){
+                    workarounds.applyWorkaround185(skipSizeRecalculationForJNLP185);
+                }
+            } else {
+                getLog().info("Skipped signing jar-files referenced inside JNLP-files.");
+            }
+        }
+    }
+
+    /**
+     * When the JavaFX JAR got created using &lt;nestedJar&gt;, the native launcher has to start the bootstrap class.
+     */
+    private String getLauncherMainClass() {
+        File mainJar = new File(jfxAppOutputDir, jfxMainAppJarName);
+        if( !mainJar.isFile() ){
+            return mainClass;
+        }
+        try(JarFile jarFile = new JarFile(mainJar)){
+            Manifest manifest = jarFile.getManifest();
+            if( manifest != null && manifest.getMainAttributes().getValue(NestedJarLauncher.NESTED_MAIN_CLASS) != null ){
+                getLog().info("Using bootstrap class for JavaFX JAR containing nested jar-files");
+                return NestedJarLauncher.class.getName();
+            }
+        } catch(IOException ex){
+            getLog().debug(ex);
+        }
+        return mainClass;
+    }
+
+    /**
+     * @return true when the archive got put into the application resources
+     */
+    private boolean createClassDataSharingArchive(Map<String, ? super Object> params) throws MojoExecutionException {
+        // archives only work with the JVM they were created with, which is the one running this build
+        if( params.containsKey(RUNTIME_PARAM) ){
+            getLog().warn("Skipping AppCDS archive, it does not work with the runtime created by <minimizeRuntime>");
+            return false;
+        }
+        if( bundleArguments != null && bundleArguments.containsKey(RUNTIME_PARAM) ){
+            getLog().warn("Skipping AppCDS archive, it does not work with the runtime set via \"" + RUNTIME_PARAM + "\" inside <bundleArguments>");
+            return false;
+        }
+        File mainJar = new File(jfxAppOutputDir, jfxMainAppJarName);
+        if( !mainJar.isFile() ){
+            getLog().warn("Skipping AppCDS archive, the JavaFX JAR does not exist");
+            return false;
+        }
+        List<String> profilingJvmArgs = new ArrayList<>();
+        Optional.ofNullable(jvmArgs).ifPresent(profilingJvmArgs::addAll);
+        Optional.ofNullable(jvmProperties).ifPresent(jvmProps -> {
+            jvmProps.forEach((key, value) -> profilingJvmArgs.add("-D" + key + "=" + value));
+        });
+        Optional.ofNullable(appCdsProfilingJvmArgs).ifPresent(profilingJvmArgs::addAll);
+
+        File archive;
+        try{
+            ClassDataSharingArchiver archiver = new ClassDataSharingArchiver(new ApplicationProfiler(getLog()), new File(getJfxBuildDirectory(), "cds"), getLog());
+            archive = archiver.createArchive(mainJar, getLauncherMainClass(), profilingJvmArgs, appCdsMarkerClass, appCdsTimeout);
+        } catch(IOException ex){
+            getLog().warn("Couldn't create AppCDS archive, continuing without: " + ex.getMessage());
+            getLog().debug(ex);
+            return false;
+        }
+        if( archive == null ){
+            getLog().warn("Couldn't create AppCDS archive, no classes were loaded while profiling application");
+            return false;
+        }
+
+        String archiveName = appName + ClassDataSharingArchiver.ARCHIVE_EXTENSION;
+        try{
+            Files.copy(archive.toPath(), new File(jfxAppOutputDir, archiveName).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch(IOException ex){
+            throw new MojoExecutionException("Couldn't copy AppCDS archive into application resources", ex);
+        }
+        @SuppressWarnings("unchecked")
+        List<String> jvmOptions = (List<String>) params.computeIfAbsent(StandardBundlerParam.JVM_OPTIONS.getID(), key -> new ArrayList<>());
+        // the native launcher replaces $APPDIR with the folder containing the application resources
+        jvmOptions.addAll(ClassDataSharingArchiver.getRuntimeOptions("$APPDIR/" + archiveName));
+        return true;
+    }
+
+    private void removeClassDataSharingArchive() throws MojoExecutionException {
+        // some archive of a previous build must not end up inside the bundles, the launcher wouldn't use it anyway
+        File previousArchive = new File(jfxAppOutputDir, appName + ClassDataSharingArchiver.ARCHIVE_EXTENSION);
+        try{
+            if( Files.deleteIfExists(previousArchive.toPath()) ){
+                getLog().info("Removed AppCDS archive of previous build " + previousArchive);
+            }
+        } catch(IOException ex){
+            throw new MojoExecutionException("Couldn't remove AppCDS archive of previous build " + previousArchive, ex);
+        }
+    }
+
+    private void createMinimizedRuntime(Map<String, ? super Object> params) throws MojoExecutionException {
+        if( bundleArguments != null && bundleArguments.containsKey(RUNTIME_PARAM) ){
+            getLog().info("Skipping minimized runtime, \"" + RUNTIME_PARAM + "\" is set inside <bundleArguments>");
+            return;
+        }
+        if( RuntimeImageBuilder.getJlinkExecutable() == null ){
+            getLog().warn("Skipping minimized runtime, jlink was not found (requires some JDK 9 or newer), bundling the whole JRE instead");
+            return;
+        }
+        File runtimeImage;
+        try{
+            DependencyAnalyzer dependencyAnalyzer = new DependencyAnalyzer(Runtime.getRuntime().availableProcessors(), new File(getJfxBuildDirectory(), DependencyAnalyzer.CACHE_FOLDER), getLog());
+            DependencyAnalyzer.Result analysis = dependencyAnalyzer.analyze(DependencyAnalyzer.findJarFiles(jfxAppOutputDir));
+            getLog().debug("Analyzed dependencies: " + analysis.getSummary());
+            Set<String> modules = analysis.getRequiredJdkModules();
+            Optional.ofNullable(runtimeAdditionalModules).ifPresent(modules::addAll);
+            getLog().info("Modules required by application: " + modules);
+            runtimeImage = new RuntimeImageBuilder(runtimeCacheDirectory, getLog()).createRuntimeImage(modules, Optional.ofNullable(runtimeJlinkOptions).orElse(RuntimeImageBuilder.DEFAULT_JLINK_OPTIONS));
+        } catch(IOException ex){
+            getLog().warn("Couldn't create minimized runtime, bundling the whole JRE instead: " + ex.getMessage());
+            getLog().debug(ex);
+            return;
+        }
+
+        try{
+            AppResourceEnumerator.Result runtimeFiles = new AppResourceEnumerator(null, null, false, getLog()).enumerate(runtimeImage.toPath());
+            getLog().info("Minimized runtime: " + runtimeFiles.getSummary());
+            params.put(RUNTIME_PARAM, new RelativeFileSet(runtimeImage, runtimeFiles.getFiles()));
+        } catch(IOException ex){
+            throw new MojoExecutionException("Couldn't read minimized runtime " + runtimeImage, ex);
         }
     }
 
@@ -739,6 +1385,22 @@ public class NativeMojo extends AbstractJfxToolsMojo {
         }
     }
 
+    private void normalizeSignedJarFiles() throws MojoExecutionException {
+        // jarsigner adds its entries using the current time, BLOB-signed jars can't be touched (their signature covers the whole file)
+        Long reproducibleTimestamp = getReproducibleTimestamp();
+        if( reproducibleTimestamp == null ){
+            return;
+        }
+        for( String relativeJarFilePath : workarounds.getJARFilesFromJNLPFiles() ){
+            File jarFile = new File(nativeOutputDir, relativeJarFilePath);
+            try{
+                StreamingJarWriter.normalizeTimestamps(jarFile, reproducibleTimestamp);
+            } catch(IOException ex){
+                throw new MojoExecutionException("Couldn't normalize timestamps of signed jar-file: " + jarFile.getAbsolutePath(), ex);
+            }
+        }
+    }
+
     private void checkSigningConfiguration() throws MojoFailureException {
         if( !keyStore.exists() ){
             throw new MojoFailureException("Keystore does not exist, use 'jfx:generate-key-store' command to make one (expected at: " + keyStore + ")");
@@ -0,0 +1,452 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Bootstrap for JavaFX JAR files created using &lt;nestedJar&gt;, this class gets copied into that jar-file and is
+ * used as its Main-Class. All dependencies are stored unmodified (and uncompressed) inside the jar-file, this
+ * launcher reads them through a memory-mapped view of the outer jar-file, without extracting anything.
+ * <p>
+ * This class runs inside the application, so it must not use anything else than the JRE. Nested jar-files are
+ * kept as they are (including their signatures), but signatures are not verified by this class-loader.
+ */
+public class NestedJarLauncher {
+
+    public static final String NESTED_MAIN_CLASS = "JavaFX-Nested-Main-Class";
+    public static final String NESTED_PRELOADER_CLASS = "JavaFX-Nested-Preloader-Class";
+    public static final String NESTED_CLASS_PATH = "JavaFX-Nested-Class-Path";
+
+    static final String PROTOCOL = "nestedjar";
+
+    private static volatile NestedJarClassLoader activeClassLoader = null;
+
+    public static void main(String[] args) throws Throwable {
+        File outerJar = new File(NestedJarLauncher.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        Attributes mainAttributes;
+        try(JarFile jarFile = new JarFile(outerJar)){
+            mainAttributes = jarFile.getManifest().getMainAttributes();
+        }
+        String mainClassName = mainAttributes.getValue(NESTED_MAIN_CLASS);
+        if( mainClassName == null ){
+            throw new IllegalStateException("Missing manifest-entry " + NESTED_MAIN_CLASS + " inside " + outerJar);
+        }
+        List<String> nestedJars = new ArrayList<>();
+        String nestedClassPath = mainAttributes.getValue(NESTED_CLASS_PATH);
+        if( nestedClassPath != null ){
+            for( String nestedJar : nestedClassPath.trim().split("\\s+") ){
+                if( !nestedJar.isEmpty() ){
+                    nestedJars.add(nestedJar);
+                }
+            }
+        }
+
+        // the application must not be loaded by the system class-loader, otherwise it can't see the nested jar-files
+        NestedJarClassLoader classLoader = new NestedJarClassLoader(outerJar, nestedJars, ClassLoader.getSystemClassLoader().getParent());
+        activeClassLoader = classLoader;
+        registerProtocol();
+        Thread.currentThread().setContextClassLoader(classLoader);
+
+        String preloaderClassName = mainAttributes.getValue(NESTED_PRELOADER_CLASS);
+        if( preloaderClassName != null ){
+            // JavaFX loads the preloader using the class-loader of the application
+            System.setProperty("javafx.preloader", preloaderClassName);
+        }
+        launch(Class.forName(mainClassName, false, classLoader), args);
+    }
+
+    /**
+     * Same as the java-launcher does: call the main-method when there is one, otherwise launch the JavaFX application.
+     */
+    private static void launch(Class<?> mainClass, String[] args) throws Throwable {
+        try{
+            Method mainMethod = null;
+            try{
+                mainMethod = mainClass.getMethod("main", String[].class);
+            } catch(NoSuchMethodException ex){
+                // might be some JavaFX application without main-method
+            }
+            if( mainMethod != null && Modifier.isStatic(mainMethod.getModifiers()) ){
+                mainMethod.invoke(null, (Object) args);
+                return;
+            }
+            Class<?> applicationClass = Class.forName("javafx.application.Application", false, mainClass.getClassLoader());
+            if( !applicationClass.isAssignableFrom(mainClass) ){
+                throw new IllegalStateException("Class " + mainClass.getName() + " has no main-method and is no JavaFX application");
+            }
+            applicationClass.getMethod("launch", Class.class, String[].class).invoke(null, mainClass, args);
+        } catch(InvocationTargetException ex){
+            throw ex.getCause();
+        }
+    }
+
+    private static void registerProtocol() {
+        try{
+            // makes it possible to use URL.toExternalForm, like it is done for stylesheets
+            URL.setURLStreamHandlerFactory(protocol -> PROTOCOL.equals(protocol) ? new NestedJarURLStreamHandler() : null);
+        } catch(Error ex){
+            // factory already set by someone else, URL-objects still work, only parsing them from string won't
+        }
+    }
+
+    /**
+     * Loads classes and resources from the outer jar-file first, then from all nested jar-files in the order of
+     * the nested class-path.
+     */
+    static class NestedJarClassLoader extends ClassLoader {
+
+        static {
+            registerAsParallelCapable();
+        }
+
+        private final File outerJar;
+        private final List<Archive> archives = new ArrayList<>();
+        private final Map<String, Archive> archivesByName = new HashMap<>();
+        private final ProtectionDomain protectionDomain;
+
+        NestedJarClassLoader(File outerJar, List<String> nestedJars, ClassLoader parent) throws IOException {
+            super(parent);
+            this.outerJar = outerJar;
+            ByteBuffer mappedJar;
+            try(FileChannel channel = FileChannel.open(outerJar.toPath(), StandardOpenOption.READ)){
+                if( channel.size() > Integer.MAX_VALUE ){
+                    throw new IOException("Jar-file is too big for being mapped: " + outerJar);
+                }
+                // the mapping stays valid after closing the channel
+                mappedJar = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            Archive outerArchive = new Archive(null, mappedJar);
+            archives.add(outerArchive);
+            for( String nestedJar : nestedJars ){
+                ArchiveEntry entry = outerArchive.getEntry(nestedJar);
+                if( entry == null ){
+                    throw new IOException("Missing nested jar-file " + nestedJar + " inside " + outerJar);
+                }
+                if( entry.method != ZipEntry.STORED ){
+                    throw new IOException("Nested jar-file " + nestedJar + " has to be stored without compression");
+                }
+                Archive nestedArchive = new Archive(nestedJar, outerArchive.slice(entry));
+                archives.add(nestedArchive);
+                archivesByName.put(nestedJar, nestedArchive);
+            }
+            this.protectionDomain = new ProtectionDomain(new CodeSource(outerJar.toURI().toURL(), (Certificate[]) null), null, this, null);
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            String path = name.replace('.', '/') + ".class";
+            for( Archive archive : archives ){
+                ArchiveEntry entry = archive.getEntry(path);
+                if( entry == null ){
+                    continue;
+                }
+                try{
+                    byte[] classBytes = archive.read(entry);
+                    definePackageIfNeeded(name);
+                    return defineClass(name, classBytes, 0, classBytes.length, protectionDomain);
+                } catch(IOException ex){
+                    throw new ClassNotFoundException(name, ex);
+                }
+            }
+            throw new ClassNotFoundException(name);
+        }
+
+        private void definePackageIfNeeded(String className) {
+            int packageEnd = className.lastIndexOf('.');
+            if( packageEnd < 0 ){
+                return;
+            }
+            String packageName = className.substring(0, packageEnd);
+            if( getPackage(packageName) != null ){
+                return;
+            }
+            try{
+                definePackage(packageName, null, null, null, null, null, null, null);
+            } catch(IllegalArgumentException ex){
+                // defined by some other thread in the meantime
+            }
+        }
+
+        @Override
+        protected URL findResource(String name) {
+            for( Archive archive : archives ){
+                if( archive.getEntry(name) != null ){
+                    return createURL(archive, name);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        protected Enumeration<URL> findResources(String name) {
+            List<URL> resources = new ArrayList<>();
+            for( Archive archive : archives ){
+                if( archive.getEntry(name) != null ){
+                    resources.add(createURL(archive, name));
+                }
+            }
+            return Collections.enumeration(resources);
+        }
+
+        private URL createURL(Archive archive, String name) {
+            try{
+                if( archive.name == null ){
+                    // entries of the outer jar-file can use the normal jar-protocol
+                    return new URL("jar:" + outerJar.toURI() + "!/" + name);
+                }
+                return new URL(PROTOCOL, null, -1, "/" + archive.name + "!/" + name, new NestedJarURLStreamHandler());
+            } catch(IOException ex){
+                return null;
+            }
+        }
+
+        InputStream openResource(String nestedJar, String name) throws IOException {
+            Archive archive = archivesByName.get(nestedJar);
+            ArchiveEntry entry = archive == null ? null : archive.getEntry(name);
+            if( entry == null ){
+                throw new IOException("Resource not found: " + nestedJar + "!/" + name);
+            }
+            return archive.open(entry);
+        }
+    }
+
+    /**
+     * Some zip-file inside a (memory-mapped) buffer, reading its central directory once.
+     */
+    static class Archive {
+
+        private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+        private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+        private static final int END_SIGNATURE = 0x06054b50;
+        private static final int END_SIZE = 22;
+        private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+        private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+        private final String name;
+        private final ByteBuffer data;
+        private final Map<String, ArchiveEntry> entries;
+
+        Archive(String name, ByteBuffer data) throws IOException {
+            this.name = name;
+            this.data = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            this.entries = readCentralDirectory();
+        }
+
+        ArchiveEntry getEntry(String entryName) {
+            return entries.get(entryName);
+        }
+
+        ByteBuffer slice(ArchiveEntry entry) throws IOException {
+            ByteBuffer slice = data.duplicate();
+            int start = getDataOffset(entry);
+            slice.position(start);
+            slice.limit(start + (int) entry.compressedSize);
+            return slice.slice();
+        }
+
+        InputStream open(ArchiveEntry entry) throws IOException {
+            InputStream in = new ByteBufferInputStream(slice(entry));
+            if( entry.method == ZipEntry.STORED ){
+                return in;
+            }
+            // the inflater needs one dummy byte at the end when not using any zlib-header (same as ZipFile does)
+            return new InflaterInputStream(new SequenceInputStream(in, new ByteArrayInputStream(new byte[1])), new Inflater(true));
+        }
+
+        byte[] read(ArchiveEntry entry) throws IOException {
+            byte[] content = new byte[(int) entry.size];
+            try(InputStream in = open(entry)){
+                int position = 0;
+                while( position < content.length ){
+                    int read = in.read(content, position, content.length - position);
+                    if( read < 0 ){
+                        throw new IOException("Unexpected end of entry inside " + (name == null ? "jar-file" : name));
+                    }
+                    position += read;
+                }
+            }
+            return content;
+        }
+
+        private int getDataOffset(ArchiveEntry entry) throws IOException {
+            if( data.getInt(entry.localHeaderOffset) != LOCAL_HEADER_SIGNATURE ){
+                throw new IOException("Broken local header inside " + (name == null ? "jar-file" : name));
+            }
+            int nameLength = data.getShort(entry.localHeaderOffset + 26) & 0xFFFF;
+            int extraLength = data.getShort(entry.localHeaderOffset + 28) & 0xFFFF;
+            return entry.localHeaderOffset + 30 + nameLength + extraLength;
+        }
+
+        private Map<String, ArchiveEntry> readCentralDirectory() throws IOException {
+            int endOffset = -1;
+            int lowestOffset = Math.max(0, data.limit() - END_SIZE - 0xFFFF);
+            for( int offset = data.limit() - END_SIZE; offset >= lowestOffset; offset-- ){
+                if( data.getInt(offset) == END_SIGNATURE ){
+                    endOffset = offset;
+                    break;
+                }
+            }
+            if( endOffset < 0 ){
+                throw new IOException("Not a zip-file: " + (name == null ? "jar-file" : name));
+            }
+            int count = data.getShort(endOffset + 10) & 0xFFFF;
+            long centralDirectoryOffset = data.getInt(endOffset + 16) & ZIP64_MAGIC;
+            if( count == ZIP64_MAGIC_COUNT || centralDirectoryOffset == ZIP64_MAGIC ){
+                throw new IOException("Zip64-format is not supported: " + (name == null ? "jar-file" : name));
+            }
+
+            Map<String, ArchiveEntry> centralEntries = new HashMap<>(count * 2);
+            int position = (int) centralDirectoryOffset;
+            for( int i = 0; i < count; i++ ){
+                if( data.getInt(position) != CENTRAL_HEADER_SIGNATURE ){
+                    throw new IOException("Broken central directory inside " + (name == null ? "jar-file" : name));
+                }
+                int method = data.getShort(position + 10) & 0xFFFF;
+                long compressedSize = data.getInt(position + 20) & ZIP64_MAGIC;
+                long size = data.getInt(position + 24) & ZIP64_MAGIC;
+                int nameLength = data.getShort(position + 28) & 0xFFFF;
+                int extraLength = data.getShort(position + 30) & 0xFFFF;
+                int commentLength = data.getShort(position + 32) & 0xFFFF;
+                long localHeaderOffset = data.getInt(position + 42) & ZIP64_MAGIC;
+                byte[] nameBytes = new byte[nameLength];
+                ByteBuffer nameBuffer = data.duplicate();
+                nameBuffer.position(position + 46);
+                nameBuffer.get(nameBytes);
+                centralEntries.put(new String(nameBytes, StandardCharsets.UTF_8), new ArchiveEntry(method, compressedSize, size, (int) localHeaderOffset));
+                position += 46 + nameLength + extraLength + commentLength;
+            }
+            return centralEntries;
+        }
+    }
+
+    static class ArchiveEntry {
+
+        private final int method;
+        private final long compressedSize;
+        private final long size;
+        private final int localHeaderOffset;
+
+        ArchiveEntry(int method, long compressedSize, long size, int localHeaderOffset) {
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+    }
+
+    static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if( len == 0 ){
+                return 0;
+            }
+            if( !buffer.hasRemaining() ){
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    /**
+     * Handles URLs like "nestedjar:/lib/some.jar!/path/to/resource".
+     */
+    static class NestedJarURLStreamHandler extends URLStreamHandler {
+
+        @Override
+        protected URLConnection openConnection(URL url) throws IOException {
+            String path = url.getPath();
+            int separator = path.indexOf("!/");
+            if( separator < 0 || activeClassLoader == null ){
+                throw new IOException("Invalid URL: " + url);
+            }
+            String nestedJar = path.substring(path.startsWith("/") ? 1 : 0, separator);
+            String name = path.substring(separator + 2);
+            return new NestedJarURLConnection(url, nestedJar, name);
+        }
+    }
+
+    static class NestedJarURLConnection extends URLConnection {
+
+        private final String nestedJar;
+        private final String name;
+
+        NestedJarURLConnection(URL url, String nestedJar, String name) {
+            super(url);
+            this.nestedJar = nestedJar;
+            this.name = name;
+        }
+
+        @Override
+        public void connect() {
+            connected = true;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            connect();
+            return activeClassLoader.openResource(nestedJar, name);
+        }
+    }
+}
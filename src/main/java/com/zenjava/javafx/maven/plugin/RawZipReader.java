@@ -0,0 +1,245 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the central directory of some zip-file and copies the still compressed content of its entries, without
+ * inflating them. This is what makes copying entries from one jar-file into another one cheap.
+ * <p>
+ * All reads are positional, so entries can be copied by multiple threads at once.
+ */
+public class RawZipReader implements Closeable {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final int END_SIZE = 22;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+    private static final int FLAG_ENCRYPTED = 0x0001;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final FileChannel channel;
+    private final Map<String, RawEntry> entries;
+
+    public RawZipReader(File file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try{
+            this.entries = readCentralDirectory();
+        } catch(IOException | RuntimeException ex){
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * @param name the name of the entry
+     * @return the entry, or null when not existing (or being encrypted)
+     */
+    public RawEntry getEntry(String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * Copies the compressed content of the given entry, exactly as it is stored inside the zip-file.
+     *
+     * @param entry the entry to copy
+     * @param out where to write the compressed content to
+     * @throws IOException when the zip-file could not be read
+     */
+    public void copyCompressedContent(RawEntry entry, OutputStream out) throws IOException {
+        ByteBuffer localHeader = readFully(entry.localHeaderOffset, LOCAL_HEADER_SIZE);
+        if( localHeader.getInt(0) != LOCAL_HEADER_SIGNATURE ){
+            throw new IOException("Broken local header of " + entry.name + " inside " + file);
+        }
+        long position = entry.localHeaderOffset + LOCAL_HEADER_SIZE + (localHeader.getShort(26) & 0xFFFF) + (localHeader.getShort(28) & 0xFFFF);
+        long remaining = entry.compressedSize;
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, Math.max(1, remaining)));
+        while( remaining > 0 ){
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), remaining));
+            int read = channel.read(buffer, position);
+            if( read < 0 ){
+                throw new IOException("Unexpected end of " + entry.name + " inside " + file);
+            }
+            out.write(buffer.array(), 0, read);
+            position += read;
+            remaining -= read;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private Map<String, RawEntry> readCentralDirectory() throws IOException {
+        long fileSize = channel.size();
+        int tailSize = (int) Math.min(fileSize, END_SIZE + 0xFFFF + ZIP64_LOCATOR_SIZE);
+        ByteBuffer tail = readFully(fileSize - tailSize, tailSize);
+        int endOffset = -1;
+        for( int offset = tailSize - END_SIZE; offset >= 0; offset-- ){
+            if( tail.getInt(offset) == END_SIGNATURE ){
+                endOffset = offset;
+                break;
+            }
+        }
+        if( endOffset < 0 ){
+            throw new IOException("Not a zip-file: " + file);
+        }
+        long count = tail.getShort(endOffset + 10) & 0xFFFF;
+        long centralDirectorySize = tail.getInt(endOffset + 12) & ZIP64_MAGIC;
+        long centralDirectoryOffset = tail.getInt(endOffset + 16) & ZIP64_MAGIC;
+        if( count == ZIP64_MAGIC_COUNT || centralDirectorySize == ZIP64_MAGIC || centralDirectoryOffset == ZIP64_MAGIC ){
+            int locatorOffset = endOffset - ZIP64_LOCATOR_SIZE;
+            if( locatorOffset < 0 || tail.getInt(locatorOffset) != ZIP64_LOCATOR_SIGNATURE ){
+                throw new IOException("Broken zip64 end of central directory inside " + file);
+            }
+            ByteBuffer zip64End = readFully(tail.getLong(locatorOffset + 8), 56);
+            if( zip64End.getInt(0) != ZIP64_END_SIGNATURE ){
+                throw new IOException("Broken zip64 end of central directory inside " + file);
+            }
+            count = zip64End.getLong(32);
+            centralDirectorySize = zip64End.getLong(40);
+            centralDirectoryOffset = zip64End.getLong(48);
+        }
+        if( centralDirectorySize > Integer.MAX_VALUE ){
+            throw new IOException("Central directory too big inside " + file);
+        }
+
+        ByteBuffer centralDirectory = readFully(centralDirectoryOffset, (int) centralDirectorySize);
+        Map<String, RawEntry> centralEntries = new HashMap<>();
+        int position = 0;
+        for( long i = 0; i < count; i++ ){
+            if( centralDirectory.getInt(position) != CENTRAL_HEADER_SIGNATURE ){
+                throw new IOException("Broken central directory inside " + file);
+            }
+            int flags = centralDirectory.getShort(position + 8) & 0xFFFF;
+            int method = centralDirectory.getShort(position + 10) & 0xFFFF;
+            long crc = centralDirectory.getInt(position + 16) & ZIP64_MAGIC;
+            long compressedSize = centralDirectory.getInt(position + 20) & ZIP64_MAGIC;
+            long size = centralDirectory.getInt(position + 24) & ZIP64_MAGIC;
+            int nameLength = centralDirectory.getShort(position + 28) & 0xFFFF;
+            int extraLength = centralDirectory.getShort(position + 30) & 0xFFFF;
+            int commentLength = centralDirectory.getShort(position + 32) & 0xFFFF;
+            long localHeaderOffset = centralDirectory.getInt(position + 42) & ZIP64_MAGIC;
+
+            byte[] nameBytes = new byte[nameLength];
+            centralDirectory.position(position + CENTRAL_HEADER_SIZE);
+            centralDirectory.get(nameBytes);
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+            // zip64-values are only present for those fields having the magic value, in this order
+            int extraPosition = position + CENTRAL_HEADER_SIZE + nameLength;
+            int extraEnd = extraPosition + extraLength;
+            while( extraPosition + 4 <= extraEnd ){
+                int extraId = centralDirectory.getShort(extraPosition) & 0xFFFF;
+                int extraSize = centralDirectory.getShort(extraPosition + 2) & 0xFFFF;
+                if( extraId == ZIP64_EXTRA_ID ){
+                    int valuePosition = extraPosition + 4;
+                    if( size == ZIP64_MAGIC ){
+                        size = centralDirectory.getLong(valuePosition);
+                        valuePosition += 8;
+                    }
+                    if( compressedSize == ZIP64_MAGIC ){
+                        compressedSize = centralDirectory.getLong(valuePosition);
+                        valuePosition += 8;
+                    }
+                    if( localHeaderOffset == ZIP64_MAGIC ){
+                        localHeaderOffset = centralDirectory.getLong(valuePosition);
+                    }
+                }
+                extraPosition += 4 + extraSize;
+            }
+
+            if( (flags & FLAG_ENCRYPTED) == 0 ){
+                centralEntries.putIfAbsent(name, new RawEntry(name, method, crc, size, compressedSize, localHeaderOffset));
+            }
+            position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return centralEntries;
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while( buffer.hasRemaining() ){
+            if( channel.read(buffer, position + buffer.position()) < 0 ){
+                throw new IOException("Unexpected end of " + file);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    public static class RawEntry {
+
+        private final String name;
+        private final int method;
+        private final long crc;
+        private final long size;
+        private final long compressedSize;
+        private final long localHeaderOffset;
+
+        RawEntry(String name, int method, long crc, long size, long compressedSize, long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.compressedSize = compressedSize;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getMethod() {
+            return method;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+    }
+}
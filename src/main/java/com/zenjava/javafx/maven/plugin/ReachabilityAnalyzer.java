@@ -0,0 +1,441 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Computes all classes reachable from some root-classes (main class, preloader, launchers), following all references
+ * found inside the class-files. FXML-files (controllers, imports, custom elements) and service-files
+ * (META-INF/services) are taken into account, everything else being loaded by reflection has to be kept explicitly.
+ * <p>
+ * The summary of every dependency gets cached by the hash of the jar-file, so unchanged dependencies never get
+ * parsed again.
+ */
+public class ReachabilityAnalyzer {
+
+    private static final String CLASS_EXTENSION = ".class";
+    private static final String FXML_EXTENSION = ".fxml";
+    private static final String SERVICES_PREFIX = "META-INF/services/";
+    private static final String SUMMARY_EXTENSION = ".classes";
+    // bump this when changing the format of cached summaries
+    private static final String SUMMARY_VERSION = "1";
+
+    private static final Pattern FXML_CONTROLLER = Pattern.compile("fx:controller\\s*=\\s*\"([^\"]+)\"");
+    private static final Pattern FXML_IMPORT = Pattern.compile("<\\?import\\s+([^?\\s]+)\\s*\\?>");
+    private static final Pattern FXML_QUALIFIED_ELEMENT = Pattern.compile("<([a-z_$][\\w$]*(?:\\.[\\w$]+)+)[\\s/>]");
+
+    private final int threads;
+    private final File cacheDirectory;
+    private final Log logger;
+
+    public ReachabilityAnalyzer(int threads, File cacheDirectory, Log logger) {
+        this.threads = Math.max(1, threads);
+        this.cacheDirectory = cacheDirectory;
+        this.logger = logger;
+    }
+
+    public Log getLog() {
+        return logger;
+    }
+
+    /**
+     * @param applicationSource the classes of the application (some folder or jar-file), never cached
+     * @param dependencyJars all dependencies
+     * @param rootClasses names of the classes to start with (like "com.foo.Main")
+     * @param keepPatterns names of classes to keep, "*" matches anything (like "com.foo.plugins.*")
+     * @return all reachable classes
+     * @throws IOException when some source could not be read
+     */
+    public Result analyze(File applicationSource, List<File> dependencyJars, Collection<String> rootClasses, List<String> keepPatterns) throws IOException {
+        long start = System.nanoTime();
+        List<File> sources = new ArrayList<>();
+        sources.add(applicationSource);
+        sources.addAll(dependencyJars);
+        Map<File, SourceSummary> summaries = summarizeAll(sources);
+
+        // first source wins, like on the classpath
+        Map<String, Set<String>> references = new HashMap<>();
+        Map<String, List<String>> providersByService = new HashMap<>();
+        Map<String, List<String>> classesByPackage = new HashMap<>();
+        Set<String> fxmlClasses = new TreeSet<>();
+        Set<String> fxmlPackages = new TreeSet<>();
+        for( File source : sources ){
+            SourceSummary summary = summaries.get(source);
+            summary.references.forEach((className, classReferences) -> {
+                if( references.putIfAbsent(className, classReferences) == null ){
+                    classesByPackage.computeIfAbsent(getPackage(className), packageName -> new ArrayList<>()).add(className);
+                }
+            });
+            summary.providersByService.forEach((service, providers) -> providersByService.computeIfAbsent(service, key -> new ArrayList<>()).addAll(providers));
+            fxmlClasses.addAll(summary.fxmlClasses);
+            fxmlPackages.addAll(summary.fxmlPackages);
+        }
+
+        Deque<String> pending = new ArrayDeque<>();
+        rootClasses.stream().filter(rootClass -> rootClass != null).map(rootClass -> rootClass.trim().replace('.', '/')).forEach(pending::add);
+        pending.addAll(fxmlClasses);
+        fxmlPackages.forEach(fxmlPackage -> pending.addAll(classesByPackage.getOrDefault(fxmlPackage, Collections.emptyList())));
+        if( keepPatterns != null && !keepPatterns.isEmpty() ){
+            List<Pattern> patterns = keepPatterns.stream().map(ReachabilityAnalyzer::toPattern).collect(Collectors.toList());
+            references.keySet().stream().filter(className -> patterns.stream().anyMatch(pattern -> pattern.matcher(className.replace('/', '.')).matches())).forEach(pending::add);
+        }
+        // services of the JRE (or any other unknown service) can be used anytime
+        providersByService.forEach((service, providers) -> {
+            if( !references.containsKey(service) ){
+                pending.addAll(providers);
+            }
+        });
+
+        Set<String> reachable = new HashSet<>();
+        while( !pending.isEmpty() ){
+            String className = pending.pop();
+            Set<String> classReferences = references.get(className);
+            if( classReferences == null || !reachable.add(className) ){
+                continue;
+            }
+            classReferences.stream().filter(references::containsKey).filter(reference -> !reachable.contains(reference)).forEach(pending::push);
+            pending.addAll(providersByService.getOrDefault(className, Collections.emptyList()));
+        }
+
+        Result result = new Result(reachable, references.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        for( File source : sources ){
+            SourceSummary summary = summaries.get(source);
+            List<String> unreachableEntries = summary.references.keySet().stream()
+                    .filter(className -> !reachable.contains(className))
+                    .map(className -> className + CLASS_EXTENSION)
+                    .sorted()
+                    .collect(Collectors.toList());
+            result.unreachableEntries.put(source, unreachableEntries);
+            if( source != applicationSource && !summary.references.isEmpty() && unreachableEntries.size() == summary.references.size() ){
+                result.unusedJars.add(source);
+            }
+        }
+        return result;
+    }
+
+    private Map<File, SourceSummary> summarizeAll(List<File> sources) throws IOException {
+        Map<File, SourceSummary> summaries = new LinkedHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, sources.size()));
+        try{
+            Map<File, Future<SourceSummary>> futures = new LinkedHashMap<>();
+            for( int i = 0; i < sources.size(); i++ ){
+                File source = sources.get(i);
+                // the application changes all the time, caching would not help
+                boolean cacheable = i > 0;
+                futures.put(source, executor.submit(() -> summarize(source, cacheable)));
+            }
+            for( Map.Entry<File, Future<SourceSummary>> future : futures.entrySet() ){
+                summaries.put(future.getKey(), future.getValue().get());
+            }
+        } catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while analyzing classes", ex);
+        } catch(ExecutionException ex){
+            if( ex.getCause() instanceof IOException ){
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException("Error while analyzing classes", ex.getCause());
+        } finally{
+            executor.shutdownNow();
+        }
+        return summaries;
+    }
+
+    private SourceSummary summarize(File source, boolean cacheable) throws IOException {
+        if( source.isDirectory() ){
+            return summarizeDirectory(source.toPath());
+        }
+        if( !cacheable ){
+            return summarizeJar(source);
+        }
+        File cachedSummary = new File(cacheDirectory, InputFingerprint.hash(source.toPath()) + SUMMARY_EXTENSION);
+        if( cachedSummary.isFile() ){
+            try{
+                return SourceSummary.read(cachedSummary);
+            } catch(IOException | RuntimeException ex){
+                getLog().debug("Ignoring broken cached class-summary " + cachedSummary + ": " + ex.getMessage());
+            }
+        }
+        SourceSummary summary = summarizeJar(source);
+        try{
+            Files.createDirectories(cacheDirectory.toPath());
+            summary.write(cachedSummary);
+        } catch(IOException ex){
+            getLog().debug("Couldn't cache class-summary of " + source + ": " + ex.getMessage());
+        }
+        return summary;
+    }
+
+    private SourceSummary summarizeJar(File jarFile) throws IOException {
+        getLog().debug("Analyzing classes of " + jarFile);
+        SourceSummary summary = new SourceSummary();
+        try(ZipFile zipFile = new ZipFile(jarFile)){
+            for( ZipEntry zipEntry : Collections.list(zipFile.entries()) ){
+                if( zipEntry.isDirectory() || !isRelevant(zipEntry.getName()) ){
+                    continue;
+                }
+                try(InputStream in = zipFile.getInputStream(zipEntry)){
+                    summary.add(zipEntry.getName(), readFully(in));
+                }
+            }
+        }
+        return summary;
+    }
+
+    private SourceSummary summarizeDirectory(Path directory) throws IOException {
+        SourceSummary summary = new SourceSummary();
+        // try-ressource, because walking on files is lazy, resulting in file-handler left open otherwise
+        try(Stream<Path> walkstream = Files.walk(directory)){
+            for( Path file : (Iterable<Path>) walkstream.filter(Files::isRegularFile)::iterator ){
+                String entryName = directory.relativize(file).toString().replace('\\', '/');
+                if( isRelevant(entryName) ){
+                    summary.add(entryName, Files.readAllBytes(file));
+                }
+            }
+        }
+        return summary;
+    }
+
+    private static boolean isRelevant(String entryName) {
+        if( entryName.endsWith(CLASS_EXTENSION) ){
+            // multi-release classes are always next to their default version
+            return !entryName.startsWith("META-INF/") && !entryName.endsWith("module-info" + CLASS_EXTENSION);
+        }
+        return entryName.endsWith(FXML_EXTENSION) || (entryName.startsWith(SERVICES_PREFIX) && entryName.length() > SERVICES_PREFIX.length());
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while( (read = in.read(buffer)) != -1 ){
+            content.write(buffer, 0, read);
+        }
+        return content.toByteArray();
+    }
+
+    private static String getPackage(String className) {
+        int packageEnd = className.lastIndexOf('/');
+        return packageEnd < 0 ? "" : className.substring(0, packageEnd);
+    }
+
+    private static Pattern toPattern(String value) {
+        StringBuilder regex = new StringBuilder();
+        for( String part : value.trim().split("\\*", -1) ){
+            if( regex.length() > 0 ){
+                regex.append(".*");
+            }
+            regex.append(Pattern.quote(part));
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * Everything we need to know about the classes of one source.
+     */
+    private static class SourceSummary {
+
+        private static final String CLASS_LINE = "C";
+        private static final String SERVICE_LINE = "S";
+        private static final String FXML_CLASS_LINE = "F";
+        private static final String FXML_PACKAGE_LINE = "P";
+
+        private final Map<String, Set<String>> references = new TreeMap<>();
+        private final Map<String, List<String>> providersByService = new TreeMap<>();
+        private final Set<String> fxmlClasses = new TreeSet<>();
+        private final Set<String> fxmlPackages = new TreeSet<>();
+
+        void add(String entryName, byte[] content) throws IOException {
+            if( entryName.endsWith(CLASS_EXTENSION) ){
+                ClassFileParser.ClassInfo classInfo;
+                try{
+                    classInfo = ClassFileParser.parse(content);
+                } catch(IOException | RuntimeException ex){
+                    // unknown classes are never left out
+                    return;
+                }
+                if( (classInfo.getName() + CLASS_EXTENSION).equals(entryName) ){
+                    references.put(classInfo.getName(), new TreeSet<>(classInfo.getReferences()));
+                }
+            } else if( entryName.startsWith(SERVICES_PREFIX) ){
+                String service = entryName.substring(SERVICES_PREFIX.length()).replace('.', '/');
+                List<String> providers = providersByService.computeIfAbsent(service, key -> new ArrayList<>());
+                for( String line : new String(content, StandardCharsets.UTF_8).split("\\r?\\n") ){
+                    int commentStart = line.indexOf('#');
+                    String provider = (commentStart < 0 ? line : line.substring(0, commentStart)).trim();
+                    if( !provider.isEmpty() ){
+                        providers.add(provider.replace('.', '/'));
+                    }
+                }
+            } else {
+                addFxml(new String(content, StandardCharsets.UTF_8));
+            }
+        }
+
+        private void addFxml(String fxml) {
+            Matcher controllerMatcher = FXML_CONTROLLER.matcher(fxml);
+            while( controllerMatcher.find() ){
+                fxmlClasses.add(controllerMatcher.group(1).replace('.', '/'));
+            }
+            Matcher importMatcher = FXML_IMPORT.matcher(fxml);
+            while( importMatcher.find() ){
+                String imported = importMatcher.group(1);
+                if( imported.endsWith(".*") ){
+                    fxmlPackages.add(imported.substring(0, imported.length() - 2).replace('.', '/'));
+                } else {
+                    fxmlClasses.add(imported.replace('.', '/'));
+                }
+            }
+            Matcher elementMatcher = FXML_QUALIFIED_ELEMENT.matcher(fxml);
+            while( elementMatcher.find() ){
+                fxmlClasses.add(elementMatcher.group(1).replace('.', '/'));
+            }
+        }
+
+        static SourceSummary read(File file) throws IOException {
+            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            if( lines.isEmpty() || !SUMMARY_VERSION.equals(lines.get(0)) ){
+                throw new IOException("Unsupported version");
+            }
+            SourceSummary summary = new SourceSummary();
+            for( String line : lines.subList(1, lines.size()) ){
+                String[] parts = line.split(" ");
+                List<String> values = Arrays.asList(parts).subList(2, parts.length);
+                switch(parts[0]){
+                    case CLASS_LINE:
+                        summary.references.put(parts[1], new TreeSet<>(values));
+                        break;
+                    case SERVICE_LINE:
+                        summary.providersByService.put(parts[1], new ArrayList<>(values));
+                        break;
+                    case FXML_CLASS_LINE:
+                        summary.fxmlClasses.add(parts[1]);
+                        break;
+                    case FXML_PACKAGE_LINE:
+                        summary.fxmlPackages.add(parts[1]);
+                        break;
+                    default:
+                        throw new IOException("Unknown line: " + line);
+                }
+            }
+            return summary;
+        }
+
+        void write(File file) throws IOException {
+            List<String> lines = new ArrayList<>();
+            lines.add(SUMMARY_VERSION);
+            references.forEach((className, classReferences) -> lines.add(toLine(CLASS_LINE, className, classReferences)));
+            providersByService.forEach((service, providers) -> lines.add(toLine(SERVICE_LINE, service, providers)));
+            fxmlClasses.forEach(fxmlClass -> lines.add(toLine(FXML_CLASS_LINE, fxmlClass, Collections.emptyList())));
+            fxmlPackages.forEach(fxmlPackage -> lines.add(toLine(FXML_PACKAGE_LINE, fxmlPackage, Collections.emptyList())));
+
+            // write into some temporary file first, other builds might read the same cache
+            Path temporaryFile = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+            try{
+                Files.write(temporaryFile, lines, StandardCharsets.UTF_8);
+                try{
+                    Files.move(temporaryFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch(AtomicMoveNotSupportedException ex){
+                    Files.move(temporaryFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally{
+                Files.deleteIfExists(temporaryFile);
+            }
+        }
+
+        private static String toLine(String type, String name, Collection<String> values) {
+            StringBuilder line = new StringBuilder(type).append(' ').append(name);
+            values.forEach(value -> line.append(' ').append(value));
+            return line.toString();
+        }
+    }
+
+    public static class Result {
+
+        private final Set<String> reachableClasses;
+        private final int knownClasses;
+        private final long durationMillis;
+        private final Map<File, List<String>> unreachableEntries = new LinkedHashMap<>();
+        private final List<File> unusedJars = new ArrayList<>();
+
+        Result(Set<String> reachableClasses, int knownClasses, long durationMillis) {
+            this.reachableClasses = Collections.unmodifiableSet(reachableClasses);
+            this.knownClasses = knownClasses;
+            this.durationMillis = durationMillis;
+        }
+
+        /**
+         * @return internal names of all reachable classes
+         */
+        public Set<String> getReachableClasses() {
+            return reachableClasses;
+        }
+
+        /**
+         * @param source some analyzed source
+         * @return entry-names of all unreachable classes inside that source
+         */
+        public List<String> getUnreachableEntries(File source) {
+            return unreachableEntries.getOrDefault(source, Collections.emptyList());
+        }
+
+        /**
+         * @return all dependencies containing classes, but none of them being reachable
+         */
+        public List<File> getUnusedJars() {
+            return unusedJars;
+        }
+
+        public String getSummary() {
+            return String.format("%s of %s classes reachable, %s unused dependencies, took %s ms", reachableClasses.size(), knownClasses, unusedJars.size(), durationMillis);
+        }
+    }
+}
@@ -18,7 +18,6 @@ package com.zenjava.javafx.maven.plugin;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.BuildPluginManager;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -31,15 +30,6 @@ import org.apache.maven.plugin.MojoFailureException;
  */
 public class RunMojo extends AbstractJfxToolsMojo {
 
-    /**
-     * The Maven Session Object
-     *
-     * @parameter property="session"
-     * @required
-     * @readonly
-     */
-    protected MavenSession session;
-
     /**
      * The Maven PluginManager Object
      *
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Creates some minimized Java runtime image (via jlink) containing only the modules required by the application.
+ * The required modules are found by the {@link DependencyAnalyzer}. Modules only used via reflection or services
+ * (like "jdk.localedata" or "jdk.crypto.ec") can't be found this way and have to be added manually.
+ * <p>
+ * Runtime images are cached by the JDK and the set of modules, so the same image is used by all builds (and all
+ * projects) sharing the same cache-folder.
+ */
+public class RuntimeImageBuilder {
+
+    public static final List<String> DEFAULT_JLINK_OPTIONS = Collections.unmodifiableList(Arrays.asList("--strip-debug", "--no-header-files", "--no-man-pages"));
+
+    private final File cacheDirectory;
+    private final Log logger;
+
+    public RuntimeImageBuilder(File cacheDirectory, Log logger) {
+        this.cacheDirectory = cacheDirectory;
+        this.logger = logger;
+    }
+
+    public Log getLog() {
+        return logger;
+    }
+
+    /**
+     * @return the jlink-executable of the JDK running this build, or null when not existing (e.g. Java 8 or some JRE)
+     */
+    public static File getJlinkExecutable() {
+        File javaHome = new File(System.getProperty("java.home"));
+        String executableName = System.getProperty("os.name").toLowerCase().startsWith("windows") ? "jlink.exe" : "jlink";
+        File jlink = new File(new File(javaHome, "bin"), executableName);
+        return jlink.isFile() ? jlink : null;
+    }
+
+    /**
+     * Returns the cached runtime image or creates a new one.
+     *
+     * @param modules all modules to add, the modules they require get added by jlink
+     * @param jlinkOptions additional options for jlink (like "--strip-debug")
+     * @return the folder containing the runtime image
+     * @throws IOException when jlink failed
+     */
+    public File createRuntimeImage(Collection<String> modules, List<String> jlinkOptions) throws IOException {
+        File jlink = getJlinkExecutable();
+        if( jlink == null ){
+            throw new IOException("No jlink found inside " + System.getProperty("java.home") + ", minimized runtimes require some JDK 9 or newer");
+        }
+        Set<String> sortedModules = new TreeSet<>(modules);
+        String cacheKey = createCacheKey(sortedModules, jlinkOptions);
+        File cachedImage = new File(cacheDirectory, cacheKey);
+        if( cachedImage.isDirectory() ){
+            getLog().info("Using cached runtime image " + cachedImage);
+            return cachedImage;
+        }
+        Files.createDirectories(cacheDirectory.toPath());
+
+        // other builds might use the same cache, so only complete images are moved into place
+        Path temporaryFolder = Files.createTempDirectory(cacheDirectory.toPath(), cacheKey);
+        try{
+            Path temporaryImage = temporaryFolder.resolve("image");
+            List<String> command = new ArrayList<>();
+            command.add(jlink.getAbsolutePath());
+            command.add("--add-modules");
+            command.add(String.join(",", sortedModules));
+            command.addAll(jlinkOptions);
+            command.add("--output");
+            command.add(temporaryImage.toAbsolutePath().toString());
+            runJlink(command);
+            try{
+                Files.move(temporaryImage, cachedImage.toPath());
+            } catch(FileAlreadyExistsException ex){
+                getLog().debug("Runtime image got created by some other build: " + cachedImage);
+            }
+        } finally{
+            FileStager.deleteRecursive(temporaryFolder);
+        }
+        getLog().info(String.format("Created runtime image %s containing modules %s", cachedImage, sortedModules));
+        return cachedImage;
+    }
+
+    private static String createCacheKey(Set<String> modules, List<String> jlinkOptions) {
+        StringBuilder cacheKey = new StringBuilder();
+        // images only work with the JDK they were created from
+        cacheKey.append(System.getProperty("java.home")).append('\n');
+        cacheKey.append(System.getProperty("java.runtime.version")).append('\n');
+        cacheKey.append(System.getProperty("os.name")).append(' ').append(System.getProperty("os.arch")).append('\n');
+        cacheKey.append(String.join(",", modules)).append('\n');
+        cacheKey.append(String.join(" ", jlinkOptions)).append('\n');
+        return InputFingerprint.hash(cacheKey.toString());
+    }
+
+    private void runJlink(List<String> command) throws IOException {
+        getLog().debug("Creating runtime image: " + String.join(" ", command));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        List<String> output = new ArrayList<>();
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), Charset.defaultCharset()))){
+            String line;
+            while( (line = reader.readLine()) != null ){
+                getLog().debug("[jlink] " + line);
+                output.add(line);
+            }
+        }
+        try{
+            int exitCode = process.waitFor();
+            if( exitCode != 0 ){
+                String lastLine = output.isEmpty() ? "no output" : output.get(output.size() - 1);
+                throw new IOException(String.format("jlink failed to create runtime image (exit code %s): %s", exitCode, lastLine));
+            }
+        } catch(InterruptedException ex){
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while creating runtime image", ex);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The entries of some jar-file in the order they are needed while starting the application. The profile is some
+ * plain text-file containing one entry-name per line, lines starting with "#" are comments. Only classes get
+ * recorded, resources can be added by hand.
+ */
+public class StartupOrderProfile {
+
+    private static final String COMMENT = "#";
+
+    private final List<String> entryNames;
+
+    public StartupOrderProfile(List<String> entryNames) {
+        this.entryNames = Collections.unmodifiableList(new ArrayList<>(entryNames));
+    }
+
+    public List<String> getEntryNames() {
+        return entryNames;
+    }
+
+    /**
+     * @param loadedClasses all classes in the order they got loaded (including the ones of the JRE)
+     * @param jarFile the jar-file to create the profile for
+     * @return the profile containing all loaded classes found inside the jar-file
+     * @throws IOException when the jar-file could not be read
+     */
+    public static StartupOrderProfile fromLoadedClasses(Collection<String> loadedClasses, File jarFile) throws IOException {
+        Set<String> existingEntries = new LinkedHashSet<>();
+        try(ZipFile zipFile = new ZipFile(jarFile)){
+            for( ZipEntry zipEntry : Collections.list(zipFile.entries()) ){
+                existingEntries.add(zipEntry.getName());
+            }
+        }
+        Set<String> orderedEntries = new LinkedHashSet<>();
+        for( String loadedClass : loadedClasses ){
+            String entryName = loadedClass.replace('.', '/') + ".class";
+            if( existingEntries.contains(entryName) ){
+                orderedEntries.add(entryName);
+            }
+        }
+        return new StartupOrderProfile(new ArrayList<>(orderedEntries));
+    }
+
+    public static StartupOrderProfile read(File profileFile) throws IOException {
+        List<String> entryNames = new ArrayList<>();
+        for( String line : Files.readAllLines(profileFile.toPath(), StandardCharsets.UTF_8) ){
+            String entryName = line.trim();
+            if( entryName.isEmpty() || entryName.startsWith(COMMENT) ){
+                continue;
+            }
+            entryNames.add(entryName);
+        }
+        return new StartupOrderProfile(entryNames);
+    }
+
+    public void write(File profileFile) throws IOException {
+        List<String> lines = new ArrayList<>();
+        // no timestamp here, this file is meant to be committed
+        lines.add(COMMENT + " Startup order of the JavaFX JAR, recorded by the javafx-maven-plugin.");
+        lines.add(COMMENT + " These entries are written first, in this order. Resources may be added by hand.");
+        lines.addAll(entryNames);
+        Files.createDirectories(profileFile.getAbsoluteFile().getParentFile().toPath());
+        Files.write(profileFile.toPath(), lines, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,1041 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Writes the JavaFX JAR without using the JavaFX packager. All entries are read from their source (some folder or
+ * some existing jar-file) and get compressed ahead of writing them, up to two entries per thread at once. The
+ * compressed content of each of these entries is buffered in memory up to 8 MB, bigger ones get buffered inside some
+ * temporary file, so memory usage stays bounded no matter how big the jar-file gets.
+ * <p>
+ * When being reproducible, two builds of the same sources result in byte-identical jar-files.
+ */
+public class StreamingJarWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String SERVICES_PREFIX = "META-INF/services/";
+    private static final String INDEX_NAME = "META-INF/INDEX.LIST";
+    private static final int MANIFEST_LINE_LENGTH = 72;
+    // compressed content bigger than this is buffered inside some temporary file when compressing in parallel
+    private static final int SCATTER_MEMORY_LIMIT = 8 * 1024 * 1024;
+    private static final int PARALLEL_ENTRIES_PER_THREAD = 2;
+    private static final byte[] MANIFEST_NEWLINE = {'\r', '\n'};
+
+    private final Log logger;
+    private final List<File> directorySources = new ArrayList<>();
+    private final List<File> jarSources = new ArrayList<>();
+    private final List<File> dependencyJars = new ArrayList<>();
+    private final List<EntrySource> additionalSources = new ArrayList<>();
+    private final Set<String> storedEntries = new HashSet<>();
+    private final Set<String> excludedEntries = new HashSet<>();
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private Long fixedTimestamp = null;
+    private CompressionPolicy compressionPolicy = null;
+    private int threads = 1;
+    private boolean copyCompressedEntries = false;
+    private String indexedJarName = null;
+    private Map<String, File> indexedClassPath = null;
+    private final Map<String, Integer> entryOrder = new HashMap<>();
+    private final Map<String, CompressionStatistic> compressionStatistics = new TreeMap<>();
+
+    public StreamingJarWriter(Log logger) {
+        this.logger = logger;
+    }
+
+    public Log getLog() {
+        return logger;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        if( compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION ){
+            throw new IllegalArgumentException("Compression level has to be between -1 and 9, but was " + compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Uses the given policy to decide per entry whether to store or to deflate it (and which level to use). Without any
+     * policy, all entries get deflated using the compression level. After writing, some report about the bytes and
+     * time each choice took gets logged.
+     *
+     * @param compressionPolicy the policy to use
+     */
+    public void setCompressionPolicy(CompressionPolicy compressionPolicy) {
+        this.compressionPolicy = compressionPolicy;
+    }
+
+    /**
+     * Using more than one thread compresses the entries in parallel. The resulting jar-file is the same, regardless
+     * of the number of threads.
+     *
+     * @param threads number of threads to use for compressing entries
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Copies all entries of jar-files added via {@link #addJar(File)} as they are, without inflating and deflating
+     * them again. Only the manifest and all other sources get written as usual, which makes updating big jar-files
+     * cheap. The compression level and policy don't apply to the copied entries.
+     *
+     * @param copyCompressedEntries true for copying compressed entries as they are
+     */
+    public void setCopyCompressedEntries(boolean copyCompressedEntries) {
+        this.copyCompressedEntries = copyCompressedEntries;
+    }
+
+    /**
+     * Makes the resulting jar-file reproducible: all entries are sorted by name and get the same timestamp, the
+     * attributes of the manifest are sorted too.
+     *
+     * @param timestamp milliseconds since epoch to use for all entries
+     */
+    public void setReproducible(long timestamp) {
+        this.fixedTimestamp = timestamp;
+    }
+
+    /**
+     * Adds some package-to-jar index (META-INF/INDEX.LIST) covering the resulting jar-file and all jar-files of its
+     * Class-Path. Any existing index of the sources gets replaced.
+     *
+     * @param jarName the file-name of the resulting jar-file
+     * @param classPathJars all jar-files of the Class-Path, by their path relative to the resulting jar-file
+     */
+    public void setJarIndex(String jarName, Map<String, File> classPathJars) {
+        this.indexedJarName = jarName;
+        this.indexedClassPath = new LinkedHashMap<>(classPathJars);
+    }
+
+    /**
+     * Writes the given entries first, in the given order (e.g. the order they get loaded while starting the
+     * application). All other entries follow in their usual order.
+     *
+     * @param entryNames the names of the entries to write first
+     */
+    public void setEntryOrder(List<String> entryNames) {
+        entryOrder.clear();
+        for( String entryName : entryNames ){
+            entryOrder.putIfAbsent(entryName, entryOrder.size());
+        }
+    }
+
+    /**
+     * Adds all files of the given folder, their names inside the jar-file are relative to this folder.
+     *
+     * @param directory the folder containing classes and resources
+     */
+    public void addDirectory(File directory) {
+        directorySources.add(directory);
+    }
+
+    /**
+     * Adds all entries of the given jar-file. The main attributes of its manifest are kept, unless they get
+     * overwritten.
+     *
+     * @param jarFile the existing jar-file
+     */
+    public void addJar(File jarFile) {
+        jarSources.add(jarFile);
+    }
+
+    /**
+     * Merges all entries of the given dependency into the resulting jar-file, after all other sources. Its manifest,
+     * signature-files and INDEX.LIST are ignored, service-files (META-INF/services) of all sources are merged. When
+     * some class exists more than once, the first one wins and the duplicate gets reported.
+     *
+     * @param jarFile the dependency to merge
+     */
+    public void addDependencyJar(File jarFile) {
+        dependencyJars.add(jarFile);
+    }
+
+    /**
+     * Adds some single file. Entries added this way win over all entries from folders or jar-files.
+     *
+     * @param name the name inside the jar-file
+     * @param file the file to add
+     */
+    public void addFile(String name, File file) {
+        additionalSources.add(new EntrySource(name, file.lastModified(), false, file.length(), file.getName(), -1, () -> Files.newInputStream(file.toPath())));
+    }
+
+    /**
+     * Adds some single file, which gets stored without any compression (regardless of the compression policy).
+     * This is required for content that gets read in place, like nested jar-files.
+     *
+     * @param name the name inside the jar-file
+     * @param file the file to add
+     */
+    public void addStoredFile(String name, File file) {
+        addFile(name, file);
+        storedEntries.add(name);
+    }
+
+    /**
+     * Adds some generated content. Entries added this way win over all entries from folders or jar-files.
+     *
+     * @param name the name inside the jar-file
+     * @param content the content of the entry
+     */
+    public void addContent(String name, byte[] content) {
+        additionalSources.add(new EntrySource(name, 0, false, content.length, "generated", -1, () -> new ByteArrayInputStream(content)));
+    }
+
+    /**
+     * Entries with this name won't get written, regardless of their source.
+     *
+     * @param name the name inside the jar-file
+     */
+    public void excludeEntry(String name) {
+        excludedEntries.add(name);
+    }
+
+    /**
+     * Writes the jar-file. When some entry exists in more than one source, the first one wins.
+     *
+     * @param targetJar the jar-file to create (will be replaced when existing)
+     * @param manifestAttributes main attributes of the manifest, in the order they should appear
+     * @throws IOException when some source could not be read or the jar could not be written
+     */
+    public void write(File targetJar, Map<String, String> manifestAttributes) throws IOException {
+        Path targetPath = targetJar.toPath().toAbsolutePath();
+        Files.createDirectories(targetPath.getParent());
+
+        List<ZipFile> openedJars = new ArrayList<>();
+        List<RawZipReader> rawReaders = new ArrayList<>();
+        // write into some temporary file first, so there never is a half-written jar-file
+        Path temporaryJar = Files.createTempFile(targetPath.getParent(), targetPath.getFileName().toString(), ".tmp");
+        try{
+            Map<String, String> allManifestAttributes = new LinkedHashMap<>();
+            Map<String, Map<String, String>> manifestSections = new LinkedHashMap<>();
+            List<EntrySource> entries = new ArrayList<>();
+            entries.addAll(additionalSources);
+            for( File jarSource : jarSources ){
+                ZipFile zipFile = new ZipFile(jarSource);
+                openedJars.add(zipFile);
+                readManifestAttributes(zipFile, allManifestAttributes, manifestSections);
+                List<EntrySource> jarEntries = collectFromJar(zipFile);
+                if( copyCompressedEntries ){
+                    attachCompressedContent(jarSource, jarEntries, rawReaders);
+                }
+                entries.addAll(jarEntries);
+            }
+            for( File directorySource : directorySources ){
+                entries.addAll(collectFromDirectory(directorySource.toPath()));
+            }
+            for( File dependencyJar : dependencyJars ){
+                ZipFile zipFile = new ZipFile(dependencyJar);
+                openedJars.add(zipFile);
+                entries.addAll(collectFromDependencyJar(zipFile, dependencyJar));
+            }
+            allManifestAttributes.putAll(manifestAttributes);
+            if( !excludedEntries.isEmpty() ){
+                entries.removeIf(entry -> excludedEntries.contains(entry.getName()));
+            }
+            if( !dependencyJars.isEmpty() ){
+                entries = mergeEntries(entries);
+            }
+            if( fixedTimestamp != null ){
+                // first source wins, then sort by name (directories come right before their content)
+                Map<String, EntrySource> uniqueEntries = new TreeMap<>();
+                entries.forEach(entry -> uniqueEntries.putIfAbsent(entry.getName(), entry));
+                entries = new ArrayList<>(uniqueEntries.values());
+            }
+            if( !entryOrder.isEmpty() ){
+                // stable sort, all entries not being ordered keep their position relative to each other
+                entries.sort(Comparator.comparingInt(entry -> entryOrder.getOrDefault(entry.getName(), Integer.MAX_VALUE)));
+            }
+            if( indexedJarName != null ){
+                entries = addJarIndex(entries);
+            }
+
+            byte[] manifest = createManifest(allManifestAttributes, manifestSections);
+            // always the same zip-structure, so the jar-file does not depend on the number of threads
+            writeArchive(temporaryJar, manifest, entries);
+            logCompressionReport();
+
+            try{
+                Files.move(temporaryJar, targetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch(AtomicMoveNotSupportedException ex){
+                Files.move(temporaryJar, targetPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally{
+            for( ZipFile openedJar : openedJars ){
+                openedJar.close();
+            }
+            for( RawZipReader rawReader : rawReaders ){
+                rawReader.close();
+            }
+            Files.deleteIfExists(temporaryJar);
+        }
+    }
+
+    private void attachCompressedContent(File jarSource, List<EntrySource> jarEntries, List<RawZipReader> rawReaders) {
+        RawZipReader rawReader;
+        try{
+            rawReader = new RawZipReader(jarSource);
+        } catch(IOException ex){
+            getLog().warn(String.format("Couldn't read %s for copying its compressed entries, all entries get compressed again: %s", jarSource.getName(), ex.getMessage()));
+            return;
+        }
+        rawReaders.add(rawReader);
+        int attachedEntries = 0;
+        for( EntrySource jarEntry : jarEntries ){
+            RawZipReader.RawEntry rawEntry = rawReader.getEntry(jarEntry.getName());
+            if( jarEntry.isDirectory() || rawEntry == null || (rawEntry.getMethod() != ZipEntry.STORED && rawEntry.getMethod() != ZipEntry.DEFLATED) ){
+                continue;
+            }
+            jarEntry.setCompressedContent(rawReader, rawEntry);
+            attachedEntries++;
+        }
+        getLog().debug(String.format("Copying %s compressed entries of %s as they are", attachedEntries, jarSource.getName()));
+    }
+
+    private List<EntrySource> addJarIndex(List<EntrySource> entries) throws IOException {
+        long start = System.nanoTime();
+        List<EntrySource> indexedEntries = new ArrayList<>(entries.size() + 1);
+        List<String> entryNames = new ArrayList<>(entries.size());
+        for( EntrySource entry : entries ){
+            if( INDEX_NAME.equals(entry.getName()) ){
+                continue;
+            }
+            indexedEntries.add(entry);
+            entryNames.add(entry.getName());
+        }
+        Map<String, Set<String>> packagesByJar = new JarIndexBuilder(threads).scanJars(indexedClassPath);
+        byte[] index = JarIndexBuilder.createIndex(indexedJarName, JarIndexBuilder.getPackages(entryNames), packagesByJar);
+        // like the jar-tool does: the index comes right after the manifest
+        indexedEntries.add(0, new EntrySource(INDEX_NAME, 0, false, index.length, "generated", -1, () -> new ByteArrayInputStream(index)));
+        getLog().debug(String.format("Created package-to-jar index for %s jar-files in %s ms", packagesByJar.size() + 1, (System.nanoTime() - start) / 1000000));
+        return indexedEntries;
+    }
+
+    /**
+     * @param manifestAttributes the main attributes
+     * @param manifestSections the attributes of the per-entry sections, by the name of the entry
+     */
+    private byte[] createManifest(Map<String, String> manifestAttributes, Map<String, Map<String, String>> manifestSections) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeManifestAttribute(out, Attributes.Name.MANIFEST_VERSION.toString(), "1.0");
+        for( Map.Entry<String, String> attribute : orderManifestAttributes(manifestAttributes).entrySet() ){
+            if( attribute.getValue() == null || Attributes.Name.MANIFEST_VERSION.toString().equalsIgnoreCase(attribute.getKey()) ){
+                continue;
+            }
+            writeManifestAttribute(out, attribute.getKey(), attribute.getValue());
+        }
+        out.write(MANIFEST_NEWLINE);
+
+        for( Map.Entry<String, Map<String, String>> section : orderManifestAttributes(manifestSections).entrySet() ){
+            writeManifestAttribute(out, "Name", section.getKey());
+            for( Map.Entry<String, String> attribute : orderManifestAttributes(section.getValue()).entrySet() ){
+                if( attribute.getValue() != null ){
+                    writeManifestAttribute(out, attribute.getKey(), attribute.getValue());
+                }
+            }
+            out.write(MANIFEST_NEWLINE);
+        }
+        return out.toByteArray();
+    }
+
+    private <T> Map<String, T> orderManifestAttributes(Map<String, T> attributes) {
+        if( fixedTimestamp != null ){
+            // normalized order, otherwise the manifest depends on the order of configuration
+            return new TreeMap<>(attributes);
+        }
+        return attributes;
+    }
+
+    /**
+     * Writes "name: value", wrapped into lines of 72 bytes like the manifest-specification requires. We are not using
+     * java.util.jar.Manifest, because the order of its attributes is not defined.
+     */
+    private void writeManifestAttribute(OutputStream out, String name, String value) throws IOException {
+        byte[] line = (name + ": " + value).getBytes(StandardCharsets.UTF_8);
+        int start = 0;
+        int maxLength = MANIFEST_LINE_LENGTH;
+        while( line.length - start > maxLength ){
+            int end = start + maxLength;
+            // never split some multi-byte character
+            while( (line[end] & 0xC0) == 0x80 ){
+                end--;
+            }
+            out.write(line, start, end - start);
+            out.write(MANIFEST_NEWLINE);
+            out.write(' ');
+            start = end;
+            // continuation-lines start with some space
+            maxLength = MANIFEST_LINE_LENGTH - 1;
+        }
+        out.write(line, start, line.length - start);
+        out.write(MANIFEST_NEWLINE);
+    }
+
+    private CompressionPolicy.Rule resolveRule(String name, CompressionPolicy policy) {
+        if( storedEntries.contains(name) ){
+            return CompressionPolicy.STORE_RULE;
+        }
+        return policy.getRule(name);
+    }
+
+    private void recordStatistic(String choice, long size, long compressedSize, long nanos, long notSavedByDeflating) {
+        CompressionStatistic statistic = compressionStatistics.computeIfAbsent(choice, key -> new CompressionStatistic());
+        statistic.entries++;
+        statistic.size += size;
+        statistic.compressedSize += compressedSize;
+        statistic.nanos += nanos;
+        statistic.notSavedByDeflating += notSavedByDeflating;
+    }
+
+    /**
+     * Compresses all entries using the thread-pool, but writes them in their original order. Every entry gets
+     * compressed on its own and the zip-structure is written by ourself, so the result is the same for any number of
+     * threads. To not hold everything in memory, only a few entries are compressed ahead, big entries are buffered
+     * inside temporary files.
+     */
+    private void writeArchive(Path temporaryJar, byte[] manifest, List<EntrySource> entries) throws IOException {
+        Set<String> writtenNames = new HashSet<>();
+        writtenNames.add("META-INF/");
+        writtenNames.add(JarFile.MANIFEST_NAME);
+        List<EntrySource> uniqueEntries = new ArrayList<>();
+        entries.forEach(entry -> {
+            if( writtenNames.add(entry.getName()) ){
+                uniqueEntries.add(entry);
+            } else {
+                getLog().debug("Skipping duplicate entry: " + entry.getName());
+            }
+        });
+        Path bufferDirectory = temporaryJar.getParent();
+        CompressionPolicy effectivePolicy = compressionPolicy == null ? new CompressionPolicy(compressionLevel) : compressionPolicy;
+
+        getLog().debug(String.format("Compressing %s entries using %s threads", uniqueEntries.size(), threads));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Deque<Future<CompressedEntry>> pendingEntries = new ArrayDeque<>();
+        try(ZipArchiveWriter out = new ZipArchiveWriter(new BufferedOutputStream(Files.newOutputStream(temporaryJar), BUFFER_SIZE))){
+            writeCompressedEntry(out, new CompressedEntry("META-INF/", getEntryTime(0)));
+            writeCompressedEntry(out, compressEntry(new EntrySource(JarFile.MANIFEST_NAME, 0, false, manifest.length, () -> new ByteArrayInputStream(manifest)), effectivePolicy, bufferDirectory));
+
+            int nextEntry = 0;
+            while( nextEntry < uniqueEntries.size() || !pendingEntries.isEmpty() ){
+                while( nextEntry < uniqueEntries.size() && pendingEntries.size() < threads * PARALLEL_ENTRIES_PER_THREAD ){
+                    EntrySource entry = uniqueEntries.get(nextEntry++);
+                    if( entry.hasCompressedContent() && !storedEntries.contains(entry.getName()) ){
+                        // nothing to compress, just keep the order
+                        pendingEntries.add(CompletableFuture.completedFuture(new CompressedEntry(entry.getName(), getEntryTime(entry.getTime()), entry.getRawReader(), entry.getRawEntry())));
+                        continue;
+                    }
+                    pendingEntries.add(executor.submit(() -> compressEntry(entry, effectivePolicy, bufferDirectory)));
+                }
+                writeCompressedEntry(out, awaitCompressedEntry(pendingEntries.poll()));
+            }
+        } finally{
+            executor.shutdown();
+            // don't leave any temporary buffers when something went wrong
+            for( Future<CompressedEntry> pendingEntry : pendingEntries ){
+                try{
+                    awaitCompressedEntry(pendingEntry).release();
+                } catch(IOException ignored){
+                    // already failing
+                }
+            }
+        }
+    }
+
+    private CompressedEntry awaitCompressedEntry(Future<CompressedEntry> pendingEntry) throws IOException {
+        try{
+            return pendingEntry.get();
+        } catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing entries", ex);
+        } catch(ExecutionException ex){
+            if( ex.getCause() instanceof IOException ){
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException("Error while compressing entries", ex.getCause());
+        }
+    }
+
+    private void writeCompressedEntry(ZipArchiveWriter out, CompressedEntry entry) throws IOException {
+        try{
+            if( entry.rawEntry != null ){
+                out.writeEntry(entry.name, entry.time, entry.method, entry.crc, entry.size, entry.rawEntry.getCompressedSize(), target -> entry.rawReader.copyCompressedContent(entry.rawEntry, target));
+                return;
+            }
+            out.writeEntry(entry.name, entry.time, entry.method, entry.crc, entry.size, entry.content == null ? 0 : entry.content.getSize(), target -> {
+                if( entry.content != null ){
+                    entry.content.writeTo(target);
+                }
+            });
+            // same as when writing sequentially, the manifest is not part of the report
+            if( compressionPolicy != null && entry.choice != null && !JarFile.MANIFEST_NAME.equals(entry.name) ){
+                recordStatistic(entry.choice, entry.size, entry.content.getSize(), entry.nanos, entry.notSavedByDeflating);
+            }
+        } finally{
+            entry.release();
+        }
+    }
+
+    /**
+     * Runs on the worker-threads, this is where all the compressing happens.
+     */
+    private CompressedEntry compressEntry(EntrySource entry, CompressionPolicy policy, Path bufferDirectory) throws IOException {
+        long time = getEntryTime(entry.getTime());
+        if( entry.isDirectory() ){
+            return new CompressedEntry(entry.getName(), time);
+        }
+        long start = System.nanoTime();
+        CompressionPolicy.Rule rule = resolveRule(entry.getName(), policy);
+        String choice = rule.toString();
+        long notSavedByDeflating = 0;
+
+        int method = rule.getKind() == CompressionPolicy.Kind.STORE ? ZipEntry.STORED : ZipEntry.DEFLATED;
+        CRC32 crc = new CRC32();
+        ScatterBuffer content = bufferContent(entry, method == ZipEntry.DEFLATED ? rule.getLevel() : null, crc, bufferDirectory);
+        if( rule.getKind() == CompressionPolicy.Kind.AUTO ){
+            long size = content.getUncompressedSize();
+            boolean worthCompressing = content.getSize() <= size * CompressionPolicy.AUTO_STORE_RATIO;
+            choice = choice + (worthCompressing ? " (deflated)" : " (stored)");
+            if( !worthCompressing ){
+                notSavedByDeflating = size - content.getSize();
+                content.release();
+                crc.reset();
+                method = ZipEntry.STORED;
+                content = bufferContent(entry, null, crc, bufferDirectory);
+            }
+        }
+        return new CompressedEntry(entry.getName(), time, method, crc.getValue(), content.getUncompressedSize(), content, choice, System.nanoTime() - start, notSavedByDeflating);
+    }
+
+    private ScatterBuffer bufferContent(EntrySource entry, Integer level, CRC32 crc, Path bufferDirectory) throws IOException {
+        ScatterBuffer buffer = new ScatterBuffer(bufferDirectory);
+        Deflater deflater = level == null ? null : new Deflater(level, true);
+        byte[] readBuffer = new byte[BUFFER_SIZE];
+        try{
+            try(InputStream in = entry.open(); OutputStream out = deflater == null ? buffer : new DeflaterOutputStream(buffer, deflater, BUFFER_SIZE)){
+                int read;
+                while( (read = in.read(readBuffer)) != -1 ){
+                    crc.update(readBuffer, 0, read);
+                    buffer.addUncompressedSize(read);
+                    out.write(readBuffer, 0, read);
+                }
+            }
+        } catch(IOException | RuntimeException ex){
+            buffer.release();
+            throw ex;
+        } finally{
+            if( deflater != null ){
+                deflater.end();
+            }
+        }
+        return buffer;
+    }
+
+    private long getEntryTime(long time) {
+        if( fixedTimestamp != null ){
+            return toZipTime(fixedTimestamp);
+        }
+        // same as ZipOutputStream does for entries without any time
+        return time > 0 ? time : System.currentTimeMillis();
+    }
+
+    private void logCompressionReport() {
+        if( compressionStatistics.isEmpty() ){
+            return;
+        }
+        getLog().info("Compression report of the JavaFX JAR:");
+        compressionStatistics.forEach((choice, statistic) -> {
+            StringBuilder line = new StringBuilder();
+            line.append(String.format("  %s: %s entries, %s bytes", choice, statistic.entries, statistic.size));
+            if( statistic.compressedSize != statistic.size ){
+                line.append(String.format(" -> %s bytes (saved %s bytes)", statistic.compressedSize, statistic.size - statistic.compressedSize));
+            }
+            if( statistic.notSavedByDeflating != 0 ){
+                line.append(String.format(", not worth deflating (would have saved %s bytes)", statistic.notSavedByDeflating));
+            }
+            line.append(String.format(", %s ms", statistic.nanos / 1000000));
+            getLog().info(line.toString());
+        });
+    }
+
+    /**
+     * Zip-entries are using local time, so the same timestamp would result in different entries when building in
+     * different timezones. This shifts the timestamp, so the stored time is the same as UTC.
+     *
+     * @param timestamp milliseconds since epoch
+     * @return the value to pass into ZipEntry.setTime
+     */
+    public static long toZipTime(long timestamp) {
+        return timestamp - TimeZone.getDefault().getOffset(timestamp);
+    }
+
+    /**
+     * Rewrites the given jar-file with all entries having the given timestamp. The order of all entries is kept (signed
+     * jar-files require the signature-files right after the manifest) and the content stays the same, so existing
+     * signatures stay valid.
+     *
+     * @param jarFile the jar-file to rewrite
+     * @param timestamp milliseconds since epoch
+     * @throws IOException when the jar could not be read or written
+     */
+    public static void normalizeTimestamps(File jarFile, long timestamp) throws IOException {
+        Path jarPath = jarFile.toPath().toAbsolutePath();
+        Path temporaryJar = Files.createTempFile(jarPath.getParent(), jarPath.getFileName().toString(), ".tmp");
+        try{
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try(ZipFile zipFile = new ZipFile(jarFile); ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryJar), BUFFER_SIZE))){
+                for( ZipEntry originalEntry : Collections.list(zipFile.entries()) ){
+                    // extra-fields might contain timestamps too, so don't take them
+                    ZipEntry zipEntry = new ZipEntry(originalEntry.getName());
+                    zipEntry.setTime(toZipTime(timestamp));
+                    zipEntry.setMethod(originalEntry.getMethod());
+                    if( originalEntry.getMethod() == ZipEntry.STORED ){
+                        zipEntry.setSize(originalEntry.getSize());
+                        zipEntry.setCompressedSize(originalEntry.getSize());
+                        zipEntry.setCrc(originalEntry.getCrc());
+                    }
+                    out.putNextEntry(zipEntry);
+                    try(InputStream in = zipFile.getInputStream(originalEntry)){
+                        int read;
+                        while( (read = in.read(buffer)) != -1 ){
+                            out.write(buffer, 0, read);
+                        }
+                    }
+                    out.closeEntry();
+                }
+            }
+            Files.move(temporaryJar, jarPath, StandardCopyOption.REPLACE_EXISTING);
+        } finally{
+            Files.deleteIfExists(temporaryJar);
+        }
+    }
+
+    private void readManifestAttributes(ZipFile zipFile, Map<String, String> manifestAttributes, Map<String, Map<String, String>> manifestSections) throws IOException {
+        ZipEntry manifestEntry = zipFile.getEntry(JarFile.MANIFEST_NAME);
+        if( manifestEntry == null ){
+            return;
+        }
+        try(InputStream in = zipFile.getInputStream(manifestEntry)){
+            Manifest manifest = new Manifest(in);
+            manifest.getMainAttributes().forEach((name, value) -> manifestAttributes.put(String.valueOf(name), String.valueOf(value)));
+            // per-entry sections (like "Name: some/package/"), holding package-versioning or sealing
+            manifest.getEntries().forEach((entryName, attributes) -> {
+                Map<String, String> sectionAttributes = manifestSections.computeIfAbsent(entryName, key -> new LinkedHashMap<>());
+                attributes.forEach((name, value) -> sectionAttributes.put(String.valueOf(name), String.valueOf(value)));
+            });
+        }
+    }
+
+    private List<EntrySource> collectFromJar(ZipFile zipFile) {
+        List<EntrySource> entries = new ArrayList<>();
+        String origin = new File(zipFile.getName()).getName();
+        zipFile.stream().forEach(zipEntry -> {
+            String name = zipEntry.getName();
+            if( JarFile.MANIFEST_NAME.equalsIgnoreCase(name) || "META-INF/".equalsIgnoreCase(name) ){
+                return;
+            }
+            entries.add(new EntrySource(name, zipEntry.getTime(), zipEntry.isDirectory(), zipEntry.getSize(), origin, zipEntry.getCrc(), () -> zipFile.getInputStream(zipEntry)));
+        });
+        return entries;
+    }
+
+    private List<EntrySource> collectFromDependencyJar(ZipFile zipFile, File dependencyJar) {
+        List<EntrySource> entries = collectFromJar(zipFile);
+        // signatures only are valid for the original jar-file, the index would point to the wrong jar-file
+        boolean wasSigned = entries.removeIf(entry -> isSignatureFile(entry.getName()));
+        entries.removeIf(entry -> INDEX_NAME.equalsIgnoreCase(entry.getName()));
+        if( wasSigned ){
+            getLog().info(String.format("Removed signature of dependency %s, merged classes are not signed anymore", dependencyJar.getName()));
+        }
+        return entries;
+    }
+
+    private static boolean isSignatureFile(String name) {
+        String upperCaseName = name.toUpperCase(Locale.ROOT);
+        if( !upperCaseName.startsWith("META-INF/") || upperCaseName.indexOf('/', "META-INF/".length()) >= 0 ){
+            return false;
+        }
+        return upperCaseName.endsWith(".SF") || upperCaseName.endsWith(".DSA") || upperCaseName.endsWith(".RSA") || upperCaseName.endsWith(".EC") || upperCaseName.startsWith("META-INF/SIG-");
+    }
+
+    /**
+     * Removes duplicate entries (first one wins) and merges all service-files, reporting duplicate classes.
+     */
+    private List<EntrySource> mergeEntries(List<EntrySource> entries) {
+        Map<String, EntrySource> uniqueEntries = new LinkedHashMap<>();
+        Map<String, List<EntrySource>> serviceFiles = new LinkedHashMap<>();
+        int duplicateClasses = 0;
+        int conflictingClasses = 0;
+        for( EntrySource entry : entries ){
+            String name = entry.getName();
+            if( !entry.isDirectory() && name.startsWith(SERVICES_PREFIX) && name.indexOf('/', SERVICES_PREFIX.length()) < 0 ){
+                serviceFiles.computeIfAbsent(name, key -> new ArrayList<>()).add(entry);
+            }
+            EntrySource existingEntry = uniqueEntries.putIfAbsent(name, entry);
+            if( existingEntry == null || entry.isDirectory() ){
+                continue;
+            }
+            if( !name.endsWith(".class") ){
+                if( !serviceFiles.containsKey(name) ){
+                    getLog().debug(String.format("Duplicate entry %s, using %s, ignoring %s", name, existingEntry.getOrigin(), entry.getOrigin()));
+                }
+                continue;
+            }
+            duplicateClasses++;
+            boolean differentContent = existingEntry.getSize() != entry.getSize() || (existingEntry.getCrc() >= 0 && entry.getCrc() >= 0 && existingEntry.getCrc() != entry.getCrc());
+            if( differentContent ){
+                conflictingClasses++;
+                getLog().warn(String.format("Duplicate class %s with different content, using %s, ignoring %s", name, existingEntry.getOrigin(), entry.getOrigin()));
+            } else {
+                getLog().debug(String.format("Duplicate class %s, using %s, ignoring %s", name, existingEntry.getOrigin(), entry.getOrigin()));
+            }
+        }
+        if( duplicateClasses > 0 ){
+            getLog().warn(String.format("Found %s duplicate classes while merging dependencies (%s with different content), the first one wins", duplicateClasses, conflictingClasses));
+        }
+
+        serviceFiles.forEach((name, sources) -> {
+            if( sources.size() > 1 ){
+                EntrySource firstSource = sources.get(0);
+                uniqueEntries.put(name, new EntrySource(name, firstSource.getTime(), false, -1, "merged service-file", -1, () -> mergeServiceFiles(sources)));
+            }
+        });
+        return new ArrayList<>(uniqueEntries.values());
+    }
+
+    private static InputStream mergeServiceFiles(List<EntrySource> sources) throws IOException {
+        // every implementation only once, keeping the order of the sources
+        Set<String> implementations = new LinkedHashSet<>();
+        for( EntrySource source : sources ){
+            try(BufferedReader reader = new BufferedReader(new InputStreamReader(source.open(), StandardCharsets.UTF_8))){
+                String line;
+                while( (line = reader.readLine()) != null ){
+                    String implementation = line.trim();
+                    if( !implementation.isEmpty() && !implementation.startsWith("#") ){
+                        implementations.add(implementation);
+                    }
+                }
+            }
+        }
+        StringBuilder mergedContent = new StringBuilder();
+        implementations.forEach(implementation -> mergedContent.append(implementation).append("\n"));
+        return new ByteArrayInputStream(mergedContent.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<EntrySource> collectFromDirectory(Path directory) throws IOException {
+        if( !Files.isDirectory(directory) ){
+            return new ArrayList<>();
+        }
+        List<Path> paths;
+        // try-ressource, because walking on files is lazy, resulting in file-handler left open otherwise
+        try(Stream<Path> walkstream = Files.walk(directory)){
+            paths = walkstream.filter(path -> !path.equals(directory)).collect(Collectors.toList());
+        }
+        List<EntrySource> entries = new ArrayList<>();
+        for( Path path : paths ){
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            String name = directory.relativize(path).toString().replace('\\', '/');
+            if( attributes.isDirectory() ){
+                name += "/";
+            }
+            if( JarFile.MANIFEST_NAME.equalsIgnoreCase(name) ){
+                // we are writing our own manifest
+                continue;
+            }
+            entries.add(new EntrySource(name, attributes.lastModifiedTime().toMillis(), attributes.isDirectory(), attributes.size(), directory.getFileName().toString(), -1, () -> Files.newInputStream(path)));
+        }
+        return entries;
+    }
+
+    /**
+     * Some entry with its final content, ready to get written.
+     */
+    private static class CompressedEntry {
+
+        private final String name;
+        private final long time;
+        private final int method;
+        private final long crc;
+        private final long size;
+        private final ScatterBuffer content;
+        private final String choice;
+        private final long nanos;
+        private final long notSavedByDeflating;
+        private final RawZipReader rawReader;
+        private final RawZipReader.RawEntry rawEntry;
+
+        CompressedEntry(String name, long time) {
+            this(name, time, ZipEntry.STORED, 0, 0, null, null, 0, 0);
+        }
+
+        CompressedEntry(String name, long time, RawZipReader rawReader, RawZipReader.RawEntry rawEntry) {
+            this.name = name;
+            this.time = time;
+            this.method = rawEntry.getMethod();
+            this.crc = rawEntry.getCrc();
+            this.size = rawEntry.getSize();
+            this.content = null;
+            this.choice = null;
+            this.nanos = 0;
+            this.notSavedByDeflating = 0;
+            this.rawReader = rawReader;
+            this.rawEntry = rawEntry;
+        }
+
+        CompressedEntry(String name, long time, int method, long crc, long size, ScatterBuffer content, String choice, long nanos, long notSavedByDeflating) {
+            this.name = name;
+            this.time = time;
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.content = content;
+            this.choice = choice;
+            this.nanos = nanos;
+            this.notSavedByDeflating = notSavedByDeflating;
+            this.rawReader = null;
+            this.rawEntry = null;
+        }
+
+        void release() {
+            if( content != null ){
+                content.release();
+            }
+        }
+    }
+
+    /**
+     * Keeps small content in memory, switches to some temporary file when getting too big.
+     */
+    private static class ScatterBuffer extends OutputStream {
+
+        private final Path directory;
+        private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        private Path file = null;
+        private OutputStream fileOut = null;
+        private long size = 0;
+        private long uncompressedSize = 0;
+
+        ScatterBuffer(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if( file == null && size + len > SCATTER_MEMORY_LIMIT ){
+                file = Files.createTempFile(directory, "jfx-entry", ".tmp");
+                fileOut = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE);
+                memory.writeTo(fileOut);
+                memory = null;
+            }
+            if( file == null ){
+                memory.write(b, off, len);
+            } else {
+                fileOut.write(b, off, len);
+            }
+            size += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if( fileOut != null ){
+                fileOut.close();
+            }
+        }
+
+        void addUncompressedSize(long bytes) {
+            uncompressedSize += bytes;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        long getUncompressedSize() {
+            return uncompressedSize;
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            if( file == null ){
+                memory.writeTo(out);
+            } else {
+                Files.copy(file, out);
+            }
+        }
+
+        void release() {
+            memory = null;
+            if( file != null ){
+                try{
+                    close();
+                    Files.deleteIfExists(file);
+                } catch(IOException ignored){
+                    // nothing we can do here
+                }
+            }
+        }
+    }
+
+    private static class CompressionStatistic {
+
+        private long entries = 0;
+        private long size = 0;
+        private long compressedSize = 0;
+        private long notSavedByDeflating = 0;
+        private long nanos = 0;
+    }
+
+    @FunctionalInterface
+    interface ContentOpener {
+
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * Some entry to write, the content is read when writing.
+     */
+    static class EntrySource {
+
+        private final String name;
+        private final long time;
+        private final boolean directory;
+        private final long size;
+        private final String origin;
+        private final long crc;
+        private final ContentOpener opener;
+        private RawZipReader rawReader = null;
+        private RawZipReader.RawEntry rawEntry = null;
+
+        EntrySource(String name, long time, boolean directory, long size, ContentOpener opener) {
+            this(name, time, directory, size, null, -1, opener);
+        }
+
+        EntrySource(String name, long time, boolean directory, long size, String origin, long crc, ContentOpener opener) {
+            this.name = name;
+            this.time = time;
+            this.directory = directory;
+            this.size = size;
+            this.origin = origin;
+            this.crc = crc;
+            this.opener = opener;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        long getTime() {
+            return time;
+        }
+
+        boolean isDirectory() {
+            return directory;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        /**
+         * @return where this entry comes from (for reporting), might be null
+         */
+        String getOrigin() {
+            return origin;
+        }
+
+        /**
+         * @return CRC-32 of the content, or -1 when not known without reading the content
+         */
+        long getCrc() {
+            return crc;
+        }
+
+        InputStream open() throws IOException {
+            return opener.open();
+        }
+
+        /**
+         * Allows copying the compressed content, without inflating it.
+         */
+        void setCompressedContent(RawZipReader rawReader, RawZipReader.RawEntry rawEntry) {
+            this.rawReader = rawReader;
+            this.rawEntry = rawEntry;
+        }
+
+        boolean hasCompressedContent() {
+            return rawEntry != null;
+        }
+
+        RawZipReader getRawReader() {
+            return rawReader;
+        }
+
+        RawZipReader.RawEntry getRawEntry() {
+            return rawEntry;
+        }
+    }
+}
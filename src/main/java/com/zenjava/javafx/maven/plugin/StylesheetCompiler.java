@@ -0,0 +1,220 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zenjava.javafx.maven.plugin;
+
+import com.sun.javafx.tools.packager.CreateBSSParams;
+import com.sun.javafx.tools.packager.PackagerException;
+import com.sun.javafx.tools.packager.PackagerLib;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Compiles CSS-files into the binary format (BSS) using the JavaFX packager. Every compiled stylesheet is cached
+ * by the hash of its content, so only changed stylesheets have to be compiled again. Hashing the stylesheets and
+ * looking them up inside the cache happens in parallel, but compiling happens one stylesheet at a time: the packager
+ * converts via some process-wide CSS-parser holding mutable state, so parallel compilations could corrupt each other
+ * (and would get cached that way).
+ */
+public class StylesheetCompiler {
+
+    private static final String CSS_EXTENSION = ".css";
+    private static final String BSS_EXTENSION = ".bss";
+    // shared by all instances, the CSS-parser used by the packager is a singleton
+    private static final Object COMPILE_LOCK = new Object();
+
+    private final int threads;
+    private final File cacheDirectory;
+    private final Log logger;
+
+    public StylesheetCompiler(int threads, File cacheDirectory, Log logger) {
+        this.threads = Math.max(1, threads);
+        this.cacheDirectory = cacheDirectory;
+        this.logger = logger;
+    }
+
+    public Log getLog() {
+        return logger;
+    }
+
+    /**
+     * Finds all CSS-files inside the given folder.
+     *
+     * @param directory the folder to search in
+     * @return all CSS-files, by their name relative to the given folder (always using "/")
+     * @throws IOException when the folder could not be walked
+     */
+    public static Map<String, File> findStylesheets(File directory) throws IOException {
+        Map<String, File> stylesheets = new TreeMap<>();
+        if( !directory.isDirectory() ){
+            return stylesheets;
+        }
+        Path basePath = directory.toPath();
+        // try-ressource, because walking on files is lazy, resulting in file-handler left open otherwise
+        try(Stream<Path> walkstream = Files.walk(basePath)){
+            walkstream.filter(Files::isRegularFile).filter(path -> path.getFileName().toString().toLowerCase().endsWith(CSS_EXTENSION)).forEach(path -> {
+                stylesheets.put(basePath.relativize(path).toString().replace('\\', '/'), path.toFile());
+            });
+        }
+        return stylesheets;
+    }
+
+    /**
+     * @param stylesheets all CSS-files to compile, by their name inside the jar-file
+     * @return the result containing the compiled files
+     */
+    public CompileResult compile(Map<String, File> stylesheets) {
+        CompileResult result = new CompileResult();
+        if( stylesheets.isEmpty() ){
+            return result;
+        }
+        try{
+            Files.createDirectories(cacheDirectory.toPath());
+        } catch(IOException ex){
+            stylesheets.keySet().forEach(name -> result.failed.put(name, "Couldn't create cache-folder " + cacheDirectory + ": " + ex.getMessage()));
+            return result;
+        }
+
+        List<String> names = new ArrayList<>(stylesheets.keySet());
+        List<StylesheetResult> compiledStylesheets = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, names.size()));
+        try{
+            List<Future<StylesheetResult>> futures = new ArrayList<>();
+            names.forEach(name -> futures.add(executor.submit(() -> compileStylesheet(name, stylesheets.get(name)))));
+            // collect in submit-order, the result should not depend on the number of threads
+            for( Future<StylesheetResult> future : futures ){
+                compiledStylesheets.add(future.get());
+            }
+        } catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            names.stream().filter(name -> !result.failed.containsKey(name)).forEach(name -> result.failed.put(name, "Interrupted while compiling stylesheets"));
+            return result;
+        } catch(ExecutionException ex){
+            throw new IllegalStateException("Error while compiling stylesheets", ex.getCause());
+        } finally{
+            executor.shutdownNow();
+        }
+
+        compiledStylesheets.forEach(compiledStylesheet -> {
+            if( compiledStylesheet.error != null ){
+                result.failed.put(compiledStylesheet.name, compiledStylesheet.error);
+                return;
+            }
+            result.compiled.put(toBinaryName(compiledStylesheet.name), compiledStylesheet.binaryFile);
+            if( compiledStylesheet.fromCache ){
+                result.cached++;
+            }
+        });
+        return result;
+    }
+
+    private StylesheetResult compileStylesheet(String name, File stylesheet) {
+        try{
+            // the binary format might change between JavaFX-versions
+            String cacheKey = InputFingerprint.hash(InputFingerprint.hash(stylesheet.toPath()) + ":" + System.getProperty("java.version"));
+            File cachedFile = new File(cacheDirectory, cacheKey + BSS_EXTENSION);
+            if( cachedFile.isFile() ){
+                return new StylesheetResult(name, cachedFile, true, null);
+            }
+
+            long start = System.nanoTime();
+            Path workingDirectory = Files.createTempDirectory(cacheDirectory.toPath(), "compile");
+            try{
+                CreateBSSParams bssParams = new CreateBSSParams();
+                bssParams.setOutdir(workingDirectory.toFile());
+                bssParams.addResource(stylesheet.getParentFile(), stylesheet.getName());
+                synchronized(COMPILE_LOCK){
+                    new PackagerLib().generateBSS(bssParams);
+                }
+
+                Path compiledFile = workingDirectory.resolve(toBinaryName(stylesheet.getName()));
+                if( !Files.isRegularFile(compiledFile) ){
+                    return new StylesheetResult(name, null, false, "JavaFX packager did not create any binary file");
+                }
+                try{
+                    Files.move(compiledFile, cachedFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch(AtomicMoveNotSupportedException ex){
+                    Files.move(compiledFile, cachedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally{
+                FileStager.deleteRecursive(workingDirectory);
+            }
+            getLog().debug(String.format("Compiled stylesheet %s in %s ms", name, (System.nanoTime() - start) / 1000000));
+            return new StylesheetResult(name, cachedFile, false, null);
+        } catch(IOException | PackagerException | RuntimeException ex){
+            getLog().debug(ex);
+            return new StylesheetResult(name, null, false, ex.getMessage() == null ? ex.getClass().getName() : ex.getMessage());
+        }
+    }
+
+    private static String toBinaryName(String stylesheetName) {
+        return stylesheetName.substring(0, stylesheetName.length() - CSS_EXTENSION.length()) + BSS_EXTENSION;
+    }
+
+    public static class CompileResult {
+
+        private final Map<String, File> compiled = new LinkedHashMap<>();
+        private final Map<String, String> failed = new LinkedHashMap<>();
+        private int cached = 0;
+
+        /**
+         * @return all binary stylesheets, by their name inside the jar-file
+         */
+        public Map<String, File> getCompiled() {
+            return compiled;
+        }
+
+        /**
+         * @return the reason of failing, by the name of the CSS-file
+         */
+        public Map<String, String> getFailed() {
+            return failed;
+        }
+
+        public String getSummary() {
+            return String.format("%s compiled, %s from cache, %s failed", compiled.size() - cached, cached, failed.size());
+        }
+    }
+
+    private static class StylesheetResult {
+
+        private final String name;
+        private final File binaryFile;
+        private final boolean fromCache;
+        private final String error;
+
+        StylesheetResult(String name, File binaryFile, boolean fromCache, String error) {
+            this.name = name;
+            this.binaryFile = binaryFile;
+            this.fromCache = fromCache;
+            this.error = error;
+        }
+    }
+}
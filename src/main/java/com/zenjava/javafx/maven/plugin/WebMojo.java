@@ -177,8 +177,17 @@ public class WebMojo extends AbstractJfxToolsMojo {
     protected String j2seVersion;
 
     @Override
-    @SuppressWarnings("deprecation")
     public void execute() throws MojoExecutionException, MojoFailureException {
+        startBuildReport("build-web");
+        try{
+            buildWeb();
+        } finally{
+            finishBuildReport();
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private void buildWeb() throws MojoExecutionException, MojoFailureException {
 
         getLog().info("Building Web deployment bundles");
 
@@ -232,7 +241,10 @@ public class WebMojo extends AbstractJfxToolsMojo {
             //noinspection deprecation
             deployParams.setBundleType(Bundler.BundleType.NONE);
 
-            getPackagerLib().generateDeploymentPackages(deployParams);
+            try(BuildReport.Stage stage = getBuildReport().startStage("generate web bundle")){
+                getPackagerLib().generateDeploymentPackages(deployParams);
+                stage.addOutput(webOutputDir);
+            }
 
             // if permissions have been requested then we need to sign the JAR file
             if( allPermissions ){
@@ -270,7 +282,11 @@ public class WebMojo extends AbstractJfxToolsMojo {
                     signJarParams.addResource(webOutputDir, "lib");
                 }
 
-                getPackagerLib().signJar(signJarParams);
+                try(BuildReport.Stage stage = getBuildReport().startStage("sign jar-files")){
+                    getPackagerLib().signJar(signJarParams);
+                    stage.addOutput(new File(webOutputDir, jfxMainAppJarName));
+                    stage.addOutput(webLibFolder);
+                }
             }
 
         } catch(PackagerException e){
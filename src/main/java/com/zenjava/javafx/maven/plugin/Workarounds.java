@@ -312,15 +312,10 @@ public class Workarounds {
                 tempResourcesDirAsFile.deleteOnExit();
 
                 // generate new RelativeFileSet with fixed cfg-file
-                Set<File> fixedResourceFiles = new HashSet<>();
-                Files.walk(tempResourcesDirectory)
-                        .map(p -> p.toFile())
-                        .filter(File::isFile)
-                        .filter(File::canRead)
-                        .forEach(f -> {
-                            getLog().info(String.format("Add %s file to application resources.", f));
-                            fixedResourceFiles.add(f);
-                        });
+                // the copied files were already filtered, so just take all of them
+                AppResourceEnumerator.Result fixedResources = new AppResourceEnumerator(null, null, false, getLog()).enumerate(tempResourcesDirectory);
+                getLog().info("Fixed application resources: " + fixedResources.getSummary());
+                Set<File> fixedResourceFiles = fixedResources.getFiles();
                 params.put(StandardBundlerParam.APP_RESOURCES.getID(), new RelativeFileSet(tempResourcesDirAsFile, fixedResourceFiles));
             } catch(IOException ex){
                 getLog().warn(ex);
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2012 Daniel Zwolenski.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zenjava.javafx.maven.plugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+
+/**
+ * Writes zip-files from entries which already got compressed (or are stored), the content just gets copied
+ * into the archive. This makes it possible to compress entries somewhere else (like in parallel), something
+ * ZipOutputStream is not able to do.
+ * <p>
+ * Archives with more than 65535 entries or bigger than 4 GB are written using the zip64-format.
+ */
+public class ZipArchiveWriter implements Closeable {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+    // names are always UTF-8, same as ZipOutputStream does by default
+    private static final int FLAG_UTF8 = 0x0800;
+
+    private final CountingOutputStream out;
+    private final List<CentralEntry> centralEntries = new ArrayList<>();
+    private boolean closed = false;
+
+    public ZipArchiveWriter(OutputStream out) {
+        this.out = new CountingOutputStream(out);
+    }
+
+    /**
+     * Writes some entry. The content has to be in the final format, means: raw deflated data (without any zlib-header)
+     * when using ZipEntry.DEFLATED.
+     *
+     * @param name name of the entry
+     * @param time last-modified time (milliseconds since epoch, interpreted in the local timezone like ZipEntry does)
+     * @param method ZipEntry.STORED or ZipEntry.DEFLATED
+     * @param crc CRC-32 of the uncompressed content
+     * @param size size of the uncompressed content
+     * @param compressedSize size of the content as being written
+     * @param content writes exactly compressedSize bytes into the given stream
+     * @throws IOException when writing failed
+     */
+    public void writeEntry(String name, long time, int method, long crc, long size, long compressedSize, ContentWriter content) throws IOException {
+        if( method != ZipEntry.STORED && method != ZipEntry.DEFLATED ){
+            throw new IllegalArgumentException("Unsupported compression method " + method);
+        }
+        CentralEntry entry = new CentralEntry(name.getBytes(StandardCharsets.UTF_8), toDosTime(time), method, crc, size, compressedSize, out.getCount());
+        boolean zip64 = size >= ZIP64_MAGIC || compressedSize >= ZIP64_MAGIC;
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        writeInt(header, LOCAL_HEADER_SIGNATURE);
+        writeShort(header, entry.getVersionNeeded(zip64));
+        writeShort(header, FLAG_UTF8);
+        writeShort(header, method);
+        writeInt(header, entry.dosTime);
+        writeInt(header, crc);
+        writeInt(header, zip64 ? ZIP64_MAGIC : compressedSize);
+        writeInt(header, zip64 ? ZIP64_MAGIC : size);
+        writeShort(header, entry.name.length);
+        writeShort(header, zip64 ? 20 : 0);
+        header.write(entry.name);
+        if( zip64 ){
+            writeShort(header, ZIP64_EXTRA_ID);
+            writeShort(header, 16);
+            writeLong(header, size);
+            writeLong(header, compressedSize);
+        }
+        header.writeTo(out);
+
+        long contentStart = out.getCount();
+        content.writeTo(out);
+        if( out.getCount() - contentStart != compressedSize ){
+            throw new IOException(String.format("Content of entry %s has %s bytes, but %s bytes were expected", name, out.getCount() - contentStart, compressedSize));
+        }
+        centralEntries.add(entry);
+    }
+
+    /**
+     * Writes the central directory and closes the underlying stream.
+     *
+     * @throws IOException when writing failed
+     */
+    @Override
+    public void close() throws IOException {
+        if( closed ){
+            return;
+        }
+        closed = true;
+        try{
+            long centralDirectoryStart = out.getCount();
+            for( CentralEntry entry : centralEntries ){
+                writeCentralEntry(entry);
+            }
+            long centralDirectorySize = out.getCount() - centralDirectoryStart;
+
+            boolean zip64 = centralEntries.size() >= ZIP64_MAGIC_COUNT || centralDirectoryStart >= ZIP64_MAGIC || centralDirectorySize >= ZIP64_MAGIC;
+            ByteArrayOutputStream end = new ByteArrayOutputStream();
+            if( zip64 ){
+                long zip64EndStart = out.getCount();
+                writeInt(end, ZIP64_END_SIGNATURE);
+                writeLong(end, 44);
+                writeShort(end, 45);
+                writeShort(end, 45);
+                writeInt(end, 0);
+                writeInt(end, 0);
+                writeLong(end, centralEntries.size());
+                writeLong(end, centralEntries.size());
+                writeLong(end, centralDirectorySize);
+                writeLong(end, centralDirectoryStart);
+
+                writeInt(end, ZIP64_LOCATOR_SIGNATURE);
+                writeInt(end, 0);
+                writeLong(end, zip64EndStart);
+                writeInt(end, 1);
+            }
+            writeInt(end, END_SIGNATURE);
+            writeShort(end, 0);
+            writeShort(end, 0);
+            writeShort(end, Math.min(centralEntries.size(), ZIP64_MAGIC_COUNT));
+            writeShort(end, Math.min(centralEntries.size(), ZIP64_MAGIC_COUNT));
+            writeInt(end, Math.min(centralDirectorySize, ZIP64_MAGIC));
+            writeInt(end, Math.min(centralDirectoryStart, ZIP64_MAGIC));
+            writeShort(end, 0);
+            end.writeTo(out);
+        } finally{
+            out.close();
+        }
+    }
+
+    private void writeCentralEntry(CentralEntry entry) throws IOException {
+        ByteArrayOutputStream extra = new ByteArrayOutputStream();
+        // only the values which don't fit are part of the zip64-extra, in this order
+        if( entry.size >= ZIP64_MAGIC ){
+            writeLong(extra, entry.size);
+        }
+        if( entry.compressedSize >= ZIP64_MAGIC ){
+            writeLong(extra, entry.compressedSize);
+        }
+        if( entry.offset >= ZIP64_MAGIC ){
+            writeLong(extra, entry.offset);
+        }
+        boolean zip64 = extra.size() > 0;
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        writeInt(header, CENTRAL_HEADER_SIGNATURE);
+        writeShort(header, entry.getVersionNeeded(zip64));
+        writeShort(header, entry.getVersionNeeded(zip64));
+        writeShort(header, FLAG_UTF8);
+        writeShort(header, entry.method);
+        writeInt(header, entry.dosTime);
+        writeInt(header, entry.crc);
+        writeInt(header, Math.min(entry.compressedSize, ZIP64_MAGIC));
+        writeInt(header, Math.min(entry.size, ZIP64_MAGIC));
+        writeShort(header, entry.name.length);
+        writeShort(header, zip64 ? extra.size() + 4 : 0);
+        // comment, disk number, internal and external attributes
+        writeShort(header, 0);
+        writeShort(header, 0);
+        writeShort(header, 0);
+        writeInt(header, 0);
+        writeInt(header, Math.min(entry.offset, ZIP64_MAGIC));
+        header.write(entry.name);
+        if( zip64 ){
+            writeShort(header, ZIP64_EXTRA_ID);
+            writeShort(header, extra.size());
+            extra.writeTo(header);
+        }
+        header.writeTo(out);
+    }
+
+    /**
+     * Converts the time into the MS-DOS format, the same way ZipEntry.setTime does.
+     *
+     * @param time milliseconds since epoch
+     * @return date and time in MS-DOS format
+     */
+    static long toDosTime(long time) {
+        LocalDateTime dateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+        if( dateTime.getYear() < 1980 ){
+            // 1980-01-01 00:00:00
+            return (1 << 21) | (1 << 16);
+        }
+        return ((long) (dateTime.getYear() - 1980) << 25)
+                | (dateTime.getMonthValue() << 21)
+                | (dateTime.getDayOfMonth() << 16)
+                | (dateTime.getHour() << 11)
+                | (dateTime.getMinute() << 5)
+                | (dateTime.getSecond() >> 1);
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value) {
+        out.write(value & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, long value) {
+        writeShort(out, (int) (value & 0xFFFF));
+        writeShort(out, (int) ((value >>> 16) & 0xFFFF));
+    }
+
+    private static void writeLong(ByteArrayOutputStream out, long value) {
+        writeInt(out, value & ZIP64_MAGIC);
+        writeInt(out, (value >>> 32) & ZIP64_MAGIC);
+    }
+
+    @FunctionalInterface
+    public interface ContentWriter {
+
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private static class CentralEntry {
+
+        private final byte[] name;
+        private final long dosTime;
+        private final int method;
+        private final long crc;
+        private final long size;
+        private final long compressedSize;
+        private final long offset;
+
+        CentralEntry(byte[] name, long dosTime, int method, long crc, long size, long compressedSize, long offset) {
+            this.name = name;
+            this.dosTime = dosTime;
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.compressedSize = compressedSize;
+            this.offset = offset;
+        }
+
+        int getVersionNeeded(boolean zip64) {
+            if( zip64 ){
+                return 45;
+            }
+            return method == ZipEntry.DEFLATED ? 20 : 10;
+        }
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        private final OutputStream out;
+        private long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}